@@ -0,0 +1,370 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgProxyAddress;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgConnectionSetup;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes messages to a single proxy from a dedicated sender thread.
+ * <p>
+ * Any number of threads can enqueue messages into a lock-free queue,
+ * and the sender thread drains the queue into a single PUB socket.
+ * The topic and the metadata are encoded by the calling thread,
+ * so the message can be reused as soon as the request is enqueued
+ * (but the data itself is not copied).
+ * Received messages are forwarded as they were received,
+ * without decoding or decompressing them.
+ * <p>
+ * The size of the queue is limited by the send high-water mark of the
+ * connection setup. When the queue is full, new messages are handled
+ * according to the overflow policy.
+ * <p>
+ * If batching is enabled, consecutive messages with the same topic are sent
+ * as a single multi-part message, until the batch reaches the maximum size
+ * or the maximum delay since the first message was dequeued.
+ */
+class AsyncPublisher {
+
+    private static final long PARK_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCK_TIMEOUT = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ConnectionManager manager;
+    private final xMsgProxyDriver connection;
+    private final Queue<Request> queue;
+    private final AtomicInteger queueSize;
+
+    private final int capacity;
+    private final xMsgOverflowPolicy overflowPolicy;
+
+    private final int batchSize;
+    private final long batchDelay;
+    private final List<Request> batch;
+
+    private final Thread thread;
+    private volatile boolean isRunning = false;
+    private volatile boolean isWaiting = false;
+
+    AsyncPublisher(String name, ConnectionManager manager, xMsgProxyDriver connection) {
+        this(name, manager, connection, 0, 0);
+    }
+
+    AsyncPublisher(String name,
+                   ConnectionManager manager,
+                   xMsgProxyDriver connection,
+                   int batchSize,
+                   long batchDelay) {
+        xMsgConnectionSetup setup = manager.proxySetup();
+        this.manager = manager;
+        this.connection = connection;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.queueSize = new AtomicInteger();
+        this.capacity = setup.sendHighWaterMark();
+        this.overflowPolicy = setup.overflowPolicy();
+        this.batchSize = batchSize;
+        this.batchDelay = TimeUnit.MICROSECONDS.toNanos(batchDelay);
+        this.batch = new ArrayList<>();
+        this.thread = xMsgUtil.newThread(name, this::run);
+    }
+
+    void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * Enqueues the message to be published by the sender thread.
+     *
+     * @param msg the message to be published
+     * @return a future that completes when the message has been sent
+     */
+    CompletableFuture<Void> publish(xMsgMessage msg) {
+        return publish(msg, msg.encodeTopic(), msg.encodeMetaData());
+    }
+
+    /**
+     * Enqueues the message to be published by the sender thread,
+     * using the given pre-encoded topic and metadata frames.
+     * The frames can be shared with other publishers.
+     *
+     * @param msg the message to be published
+     * @param topic the encoded topic of the message
+     * @param metaData the encoded metadata of the message
+     * @return a future that completes when the message has been sent
+     */
+    CompletableFuture<Void> publish(xMsgMessage msg, byte[] topic, byte[] metaData) {
+        Request request = new Request(msg, topic, metaData);
+        if (!isRunning) {
+            request.fail(new xMsgException("publisher is stopped"));
+            return request.future;
+        }
+        if (!reserve(request)) {
+            return request.future;
+        }
+        queue.offer(request);
+        if (!isRunning) {
+            // stop() may have drained the queue before the request was added,
+            // otherwise the request was already taken and will be completed
+            if (queue.remove(request)) {
+                queueSize.decrementAndGet();
+                request.fail(new xMsgException("publisher is stopped"));
+            }
+            return request.future;
+        }
+        if (isWaiting) {
+            LockSupport.unpark(thread);
+        }
+        return request.future;
+    }
+
+    /**
+     * Stops the sender thread after sending all enqueued messages,
+     * and closes the socket.
+     *
+     * @param linger the linger period when closing the socket
+     */
+    void stop(int linger) {
+        isRunning = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Request request;
+            while ((request = queue.poll()) != null) {
+                request.fail(new xMsgException("publisher is stopped"));
+            }
+            connection.close(linger);
+        }
+    }
+
+    private boolean reserve(Request request) {
+        while (true) {
+            int size = queueSize.get();
+            if (capacity == 0 || size < capacity) {
+                if (queueSize.compareAndSet(size, size + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if (!isRunning) {
+                        request.fail(new xMsgException("publisher is stopped"));
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, BLOCK_TIMEOUT);
+                    break;
+                case DROP_OLDEST:
+                    Request oldest = queue.poll();
+                    if (oldest != null) {
+                        queueSize.decrementAndGet();
+                        drop(oldest);
+                    }
+                    break;
+                case DROP_NEWEST:
+                    drop(request);
+                    return false;
+                default:
+                    request.fail(new xMsgException("send queue is full"));
+                    return false;
+            }
+        }
+    }
+
+    private void drop(Request request) {
+        manager.messageDropped();
+        request.fail(new xMsgException("message dropped"));
+    }
+
+    xMsgProxyAddress getAddress() {
+        return connection.getAddress();
+    }
+
+    private void run() {
+        Request pending = null;
+        while (true) {
+            Request request = pending != null ? pending : nextRequest();
+            pending = null;
+            if (request == null) {
+                if (!isRunning) {
+                    break;
+                }
+                isWaiting = true;
+                if (queue.isEmpty() && isRunning) {
+                    LockSupport.parkNanos(this, PARK_TIMEOUT);
+                }
+                isWaiting = false;
+                continue;
+            }
+            if (batchSize > 0) {
+                pending = fillBatch(request);
+                sendBatch();
+            } else {
+                send(request);
+            }
+        }
+    }
+
+    private Request nextRequest() {
+        Request request = queue.poll();
+        if (request != null) {
+            queueSize.decrementAndGet();
+        }
+        return request;
+    }
+
+    private Request fillBatch(Request first) {
+        batch.clear();
+        batch.add(first);
+
+        int size = first.size();
+        long deadline = System.nanoTime() + batchDelay;
+        while (size < batchSize) {
+            Request next = nextRequest();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !isRunning) {
+                    break;
+                }
+                isWaiting = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                isWaiting = false;
+                continue;
+            }
+            if (!Arrays.equals(next.topic, first.topic)) {
+                // send it with the next batch
+                return next;
+            }
+            batch.add(next);
+            size += next.size();
+        }
+        return null;
+    }
+
+    private void send(Request request) {
+        try {
+            if (request.send(connection)) {
+                request.future.complete(null);
+            } else {
+                drop(request);
+            }
+        } catch (xMsgException e) {
+            request.fail(e);
+        } catch (ZMQException e) {
+            request.fail(new xMsgException("could not publish message", e));
+            if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                isRunning = false;
+            }
+        }
+    }
+
+    private void sendBatch() {
+        if (batch.size() == 1) {
+            send(batch.get(0));
+            return;
+        }
+        try {
+            if (connection.sendBatchTopic(batch.get(0).topic)) {
+                int last = batch.size() - 1;
+                for (int i = 0; i <= last; i++) {
+                    Request request = batch.get(i);
+                    request.sendBatchPart(connection, i == last);
+                }
+                batch.forEach(r -> r.future.complete(null));
+            } else {
+                batch.forEach(this::drop);
+            }
+        } catch (xMsgException e) {
+            batch.forEach(r -> r.fail(e));
+        } catch (ZMQException e) {
+            xMsgException error = new xMsgException("could not publish batch", e);
+            batch.forEach(r -> r.fail(error));
+            if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                isRunning = false;
+            }
+        }
+    }
+
+
+    private static final class Request {
+
+        private final xMsgMessage msg;
+        private final byte[] topic;
+        private final byte[] metaData;
+        private final byte[] data;
+        private final int size;
+        private final CompletableFuture<Void> future;
+
+        private Request(xMsgMessage msg, byte[] topic, byte[] metaData) {
+            // the data must match the encoded metadata,
+            // even if the caller decodes a received message later
+            this.msg = msg;
+            this.topic = topic;
+            this.metaData = metaData;
+            this.data = msg.encodeData();
+            this.size = metaData.length + msg.encodedDataSize();
+            this.future = new CompletableFuture<>();
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private boolean send(xMsgProxyDriver connection) throws xMsgException {
+            if (msg.hasDataBuffer()) {
+                return msg.send(connection, topic, metaData);
+            }
+            return connection.send(topic, metaData, data);
+        }
+
+        private void sendBatchPart(xMsgProxyDriver connection, boolean last) {
+            if (msg.hasDataBuffer()) {
+                msg.sendBatchPart(connection, metaData, last);
+            } else {
+                connection.sendBatchPart(metaData, data, last);
+            }
+        }
+
+        private void fail(Throwable ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+}
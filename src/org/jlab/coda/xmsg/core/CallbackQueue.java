@@ -0,0 +1,218 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A queue of pending callbacks in front of an executor.
+ * <p>
+ * The callbacks are kept in this queue, and the executor only receives tasks
+ * that run the pending callbacks. This allows limiting the number of
+ * pending callbacks (and dropping the oldest ones) with any executor.
+ * <p>
+ * At most one task per executor thread is submitted at any time,
+ * and every submitted task keeps running callbacks until this queue is empty,
+ * so the queue of the executor cannot grow when callbacks are dropped.
+ */
+final class CallbackQueue {
+
+    private static final long BLOCK_TIMEOUT = 100_000; // 100 microseconds
+
+    private final ExecutorService executor;
+    private final int maxWorkers;
+    private final int capacity;
+    private final xMsgCallbackPolicy policy;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final Runnable runPending = this::runPending;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a queue for the given executor.
+     *
+     * @param executor the executor that runs the callbacks
+     * @param maxWorkers the maximum number of callbacks running in parallel
+     * @param capacity the maximum number of pending callbacks (0 if unbounded)
+     * @param policy what to do when the queue is full
+     */
+    CallbackQueue(ExecutorService executor,
+                  int maxWorkers,
+                  int capacity,
+                  xMsgCallbackPolicy policy) {
+        if (maxWorkers <= 0) {
+            throw new IllegalArgumentException("invalid number of workers: " + maxWorkers);
+        }
+        this.executor = executor;
+        this.maxWorkers = maxWorkers;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Enqueues the task and schedules its execution,
+     * or applies the overflow policy if the queue is full.
+     *
+     * @param task the callback to be executed
+     */
+    void execute(Runnable task) {
+        if (!reserve(task)) {
+            return;
+        }
+        tasks.offer(task);
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            if (tasks.remove(task)) {
+                size.decrementAndGet();
+            }
+            rejected.increment();
+        }
+    }
+
+    /**
+     * Submits a new worker task to the executor,
+     * unless all workers are already running.
+     */
+    private void schedule() {
+        if (acquireWorker()) {
+            try {
+                executor.execute(runPending);
+            } catch (RejectedExecutionException e) {
+                workers.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    private boolean acquireWorker() {
+        while (true) {
+            int current = workers.get();
+            if (current >= maxWorkers) {
+                return false;
+            }
+            if (workers.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean reserve(Runnable task) {
+        while (true) {
+            int current = size.get();
+            if (capacity == 0 || current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            switch (policy) {
+                case BLOCK:
+                    if (executor.isShutdown()) {
+                        rejected.increment();
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, BLOCK_TIMEOUT);
+                    break;
+                case DROP_OLDEST:
+                    if (tasks.poll() != null) {
+                        // the new task takes the slot of the dropped one
+                        dropped.increment();
+                        return true;
+                    }
+                    break;
+                case DROP_NEWEST:
+                    dropped.increment();
+                    return false;
+                case CALLER_RUNS:
+                    callerRuns.increment();
+                    task.run();
+                    return false;
+                default:
+                    throw new IllegalStateException("invalid policy: " + policy);
+            }
+        }
+    }
+
+    private void runPending() {
+        try {
+            Runnable task;
+            while ((task = nextTask()) != null) {
+                task.run();
+            }
+        } catch (RuntimeException | Error e) {
+            // let another worker run the remaining callbacks
+            workers.decrementAndGet();
+            if (!tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException re) {
+                    rejected.increment();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private Runnable nextTask() {
+        while (true) {
+            Runnable task = tasks.poll();
+            if (task != null) {
+                size.decrementAndGet();
+                return task;
+            }
+            workers.decrementAndGet();
+            // a new task may have been added before the worker was released
+            if (tasks.isEmpty() || !acquireWorker()) {
+                return null;
+            }
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    long callerRuns() {
+        return callerRuns.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Context;
+import org.zeromq.ZMQ.Socket;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends commands to a thread that is polling sockets.
+ * <p>
+ * The commands are queued, and the owner thread is woken up through an inproc
+ * pipe. The receiving end of the pipe must be polled by the owner thread,
+ * which runs the queued commands when the pipe is ready for reading.
+ * This allows changing sockets that can only be used by the owner thread.
+ */
+final class CommandPipe {
+
+    private static final AtomicLong pipeIds = new AtomicLong(); // nocheck: ConstantName
+
+    private static final byte[] WAKEUP = new byte[0];
+
+    // how often a waiting caller checks if the owner thread is still alive
+    private static final long AWAIT_INTERVAL = 100;
+
+    private final Socket receiver;
+    private final Socket sender;
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    CommandPipe(Context context) {
+        String address = "inproc://xmsg-pipe-" + pipeIds.incrementAndGet();
+        this.receiver = context.socket(ZMQ.PAIR);
+        this.receiver.bind(address);
+        this.sender = context.socket(ZMQ.PAIR);
+        this.sender.connect(address);
+    }
+
+    /**
+     * Gets the receiving end of the pipe, to be polled by the owner thread.
+     */
+    Socket socket() {
+        return receiver;
+    }
+
+    /**
+     * Queues the command and wakes up the owner thread.
+     */
+    void execute(Runnable command) {
+        commands.offer(command);
+        wakeup();
+    }
+
+    /**
+     * Queues the command and blocks until the owner thread has executed it.
+     * If this is called from the owner thread, the command is just queued.
+     *
+     * @return false if the owner thread terminated (or the caller was
+     *         interrupted) before executing the command
+     * @see #await
+     */
+    boolean invoke(Runnable command, Thread owner) {
+        if (Thread.currentThread() == owner) {
+            execute(command);
+            return true;
+        }
+        return await(submit(command), owner);
+    }
+
+    /**
+     * Queues the command and wakes up the owner thread.
+     *
+     * @return a latch that is released when the command has been executed
+     */
+    CountDownLatch submit(Runnable command) {
+        CountDownLatch done = new CountDownLatch(1);
+        execute(() -> {
+            try {
+                command.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Blocks until a submitted command has been executed.
+     * No lock should be held while waiting, since the owner thread may need
+     * it before it can run the command.
+     * Gives up if the owner thread terminates without running the command,
+     * or if the caller is interrupted.
+     *
+     * @return true if the command was executed
+     */
+    static boolean await(CountDownLatch done, Thread owner) {
+        try {
+            while (!done.await(AWAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (!owner.isAlive()) {
+                    return done.getCount() == 0;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return done.getCount() == 0;
+        }
+    }
+
+    /**
+     * Wakes up the owner thread.
+     */
+    void wakeup() {
+        synchronized (sender) {
+            sender.send(WAKEUP, ZMQ.DONTWAIT);
+        }
+    }
+
+    /**
+     * Runs all queued commands. Must be called by the owner thread.
+     */
+    void runCommands() {
+        // discard all pending wake-up signals
+        boolean signaled = true;
+        while (signaled) {
+            signaled = receiver.recv(ZMQ.DONTWAIT) != null;
+        }
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    void close() {
+        sender.setLinger(0);
+        sender.close();
+        receiver.setLinger(0);
+        receiver.close();
+    }
+}
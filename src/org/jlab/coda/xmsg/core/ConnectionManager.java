@@ -22,10 +22,11 @@
 
 package org.jlab.coda.xmsg.core;
 
+import java.util.ArrayDeque;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.jlab.coda.xmsg.excp.xMsgException;
@@ -50,6 +51,9 @@ class ConnectionManager {
     // default connection option
     private volatile xMsgConnectionSetup proxySetup;
 
+    // messages dropped by publisher connections
+    private final LongAdder droppedMessages = new LongAdder();
+
     ConnectionManager(xMsgConnectionFactory factory) {
         this(factory, xMsgConnectionSetup.newBuilder().build());
     }
@@ -81,6 +85,18 @@ class ConnectionManager {
         proxyConnections.setConnection(connection.getAddress(), connection);
     }
 
+    xMsgConnectionSetup proxySetup() {
+        return proxySetup;
+    }
+
+    void messageDropped() {
+        droppedMessages.increment();
+    }
+
+    long droppedMessages() {
+        return droppedMessages.sum();
+    }
+
     xMsgRegDriver getRegistrarConnection(xMsgRegAddress address) throws xMsgException {
         xMsgRegDriver cachedConnection = registrarConnections.getConnection(address);
         if (cachedConnection != null) {
@@ -99,13 +115,17 @@ class ConnectionManager {
     }
 
 
+    // The caches are array-based queues, instead of linked queues,
+    // to not allocate a new node every time a connection is released.
     static class ConnectionPool<A, C> {
         private final Map<A, Queue<C>> connections = new ConcurrentHashMap<>();
 
         public C getConnection(A address) {
             Queue<C> cache = connections.get(address);
             if (cache != null) {
-                return cache.poll();
+                synchronized (cache) {
+                    return cache.poll();
+                }
             }
             return null;
         }
@@ -113,18 +133,23 @@ class ConnectionManager {
         public void setConnection(A address, C connection) {
             Queue<C> cache = connections.get(address);
             if (cache == null) {
-                cache = new ConcurrentLinkedQueue<>();
+                cache = new ArrayDeque<>();
                 Queue<C> tempCache = connections.putIfAbsent(address, cache);
                 if (tempCache != null) {
                     cache = tempCache;
                 }
             }
-            cache.add(connection);
+            synchronized (cache) {
+                cache.add(connection);
+            }
         }
 
         public void destroyAll(Consumer<C> destroy) {
             for (Map.Entry<A, Queue<C>> cache : connections.entrySet()) {
-                cache.getValue().forEach(destroy);
+                Queue<C> queue = cache.getValue();
+                synchronized (queue) {
+                    queue.forEach(destroy);
+                }
             }
         }
     }
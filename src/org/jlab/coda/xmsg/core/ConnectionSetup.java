@@ -152,6 +152,50 @@ class ConnectionSetup {
             return getThis();
         }
 
+        /**
+         * Sets the maximum number of outgoing messages that can be queued by
+         * a publisher connection before applying the overflow policy.
+         * Zero means no limit (the default).
+         *
+         * @param hwm the high-water mark for publisher connections
+         * @return this builder
+         * @see #withOverflowPolicy(xMsgOverflowPolicy)
+         */
+        public T withSendHighWaterMark(int hwm) {
+            this.conSetup.withSendHighWaterMark(hwm);
+            return getThis();
+        }
+
+        /**
+         * Sets the maximum number of incoming messages that can be queued by
+         * a subscription. When a subscription is full, the messages published
+         * to it are queued by the proxy instead. The proxy only drops them if
+         * it was started with its own high-water mark, otherwise it keeps
+         * queuing them without limit (see {@link org.jlab.coda.xmsg.sys.xMsgProxy}).
+         * Zero means no limit (the default).
+         *
+         * @param hwm the high-water mark for subscriptions
+         * @return this builder
+         */
+        public T withReceiveHighWaterMark(int hwm) {
+            this.conSetup.withReceiveHighWaterMark(hwm);
+            return getThis();
+        }
+
+        /**
+         * Sets what to do when a publisher connection reaches its high-water
+         * mark. Dropped messages are counted by the actor.
+         * The default is {@link xMsgOverflowPolicy#DROP_NEWEST DROP_NEWEST},
+         * the normal 0MQ behavior.
+         *
+         * @param policy the overflow policy
+         * @return this builder
+         */
+        public T withOverflowPolicy(xMsgOverflowPolicy policy) {
+            this.conSetup.withOverflowPolicy(policy);
+            return getThis();
+        }
+
         abstract T getThis();
     }
 
@@ -0,0 +1,96 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The built-in codec, using the DEFLATE algorithm of the JDK.
+ * <p>
+ * Deflaters and inflaters hold native memory, so they are reused by every
+ * thread instead of created for every message.
+ */
+class DeflateCodec implements xMsgCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ThreadLocal<Deflater> deflater;
+    private final ThreadLocal<Inflater> inflater;
+
+    DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    DeflateCodec(int level) {
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+        this.inflater = ThreadLocal.withInitial(Inflater::new);
+    }
+
+    @Override
+    public String name() {
+        return xMsgCodecs.DEFLATE;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater def = deflater.get();
+        def.reset();
+        def.setInput(data);
+        def.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!def.finished()) {
+            int size = def.deflate(buffer);
+            out.write(buffer, 0, size);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws xMsgException {
+        Inflater inf = inflater.get();
+        inf.reset();
+        inf.setInput(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            while (!inf.finished()) {
+                int size = inf.inflate(buffer);
+                if (size == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    throw new xMsgException("truncated deflate data");
+                }
+                out.write(buffer, 0, size);
+            }
+        } catch (DataFormatException e) {
+            throw new xMsgException("invalid deflate data", e);
+        }
+        return out.toByteArray();
+    }
+}
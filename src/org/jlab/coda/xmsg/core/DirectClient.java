@@ -0,0 +1,202 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgDirectAddress;
+import org.jlab.coda.xmsg.net.xMsgSocketFactory;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends requests directly to the endpoints of {@link xMsgResponder responders}
+ * and receives their responses, without going through a proxy.
+ * <p>
+ * A DEALER socket is connected to every endpoint on first use, and it is kept
+ * until the actor is destroyed. The sockets are only used by the client
+ * thread: requests are encoded by the calling thread and sent as commands
+ * through a {@link CommandPipe}, and the received responses are passed to
+ * the {@link ResponseListener}, which completes the pending requests.
+ */
+final class DirectClient {
+
+    private final xMsgSocketFactory factory;
+    private final ResponseListener listener;
+    private final int drainLimit;
+
+    private final Thread thread;
+    private final CommandPipe pipe;
+
+    // only used by the client thread
+    private final Map<xMsgDirectAddress, Socket> sockets = new HashMap<>();
+    private final List<Socket> active = new ArrayList<>();
+    private Poller poller;
+
+    private volatile boolean isRunning = false;
+
+    DirectClient(String name,
+                 xMsgSocketFactory factory,
+                 ResponseListener listener,
+                 int drainLimit) {
+        this.factory = factory;
+        this.listener = listener;
+        this.drainLimit = drainLimit;
+        this.thread = xMsgUtil.newThread(name, this::run);
+        this.pipe = new CommandPipe(factory.context());
+    }
+
+    void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    void stop() {
+        isRunning = false;
+        pipe.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pipe.close();
+        }
+    }
+
+    /**
+     * Sends the request to the given endpoint.
+     * The topic and metadata are encoded before returning, so they can be
+     * modified after. A byte buffer with the data is sent without copying it,
+     * after this method returns.
+     * If the request cannot be sent, the response is completed exceptionally.
+     */
+    void send(xMsgDirectAddress address,
+              xMsgMessage msg,
+              CompletableFuture<xMsgMessage> response) {
+        byte[] topic = msg.encodeTopic();
+        byte[] metaData = msg.encodeMetaData();
+        ByteBuffer buffer = msg.hasDataBuffer() ? msg.getDataBuffer() : null;
+        byte[] data = buffer == null ? msg.getData() : null;
+        pipe.execute(() -> {
+            try {
+                Socket socket = getSocket(address);
+                socket.sendMore(topic);
+                socket.sendMore(metaData);
+                if (buffer != null) {
+                    socket.sendByteBuffer(buffer, 0);
+                } else {
+                    socket.send(data);
+                }
+            } catch (xMsgException e) {
+                response.completeExceptionally(e);
+            } catch (ZMQException e) {
+                response.completeExceptionally(new xMsgException("could not send request", e));
+            }
+        });
+    }
+
+    private Socket getSocket(xMsgDirectAddress address) throws xMsgException {
+        Socket socket = sockets.get(address);
+        if (socket == null) {
+            try {
+                socket = factory.createSocket(ZMQ.DEALER);
+                factory.connectSocket(socket, address.host(), address.port());
+            } catch (xMsgException e) {
+                factory.closeQuietly(socket);
+                throw e;
+            }
+            sockets.put(address, socket);
+            active.add(socket);
+            updatePoller();
+        }
+        return socket;
+    }
+
+    private void updatePoller() {
+        Poller newPoller = factory.context().poller(active.size() + 1);
+        newPoller.register(pipe.socket(), Poller.POLLIN);
+        for (Socket socket : active) {
+            newPoller.register(socket, Poller.POLLIN);
+        }
+        if (poller != null) {
+            poller.close();
+        }
+        poller = newPoller;
+    }
+
+    private void run() {
+        updatePoller();
+        try {
+            while (isRunning) {
+                try {
+                    poller.poll(-1);
+                    boolean wakeup = poller.pollin(0);
+                    for (int i = 0; i < active.size(); i++) {
+                        if (poller.pollin(i + 1)) {
+                            receiveResponses(active.get(i));
+                        }
+                    }
+                    if (wakeup) {
+                        pipe.runCommands();
+                    }
+                } catch (ZMQException e) {
+                    if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                        break;
+                    }
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            poller.close();
+            for (Socket socket : active) {
+                factory.setLinger(socket, 0);
+                factory.closeQuietly(socket);
+            }
+            sockets.clear();
+            active.clear();
+        }
+    }
+
+    private void receiveResponses(Socket socket) {
+        for (int i = 0; i < drainLimit; i++) {
+            ZMsg rawMsg = ZMsg.recvMsg(socket, ZMQ.DONTWAIT);
+            if (rawMsg == null) {
+                break;
+            }
+            try {
+                listener.handle(rawMsg);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
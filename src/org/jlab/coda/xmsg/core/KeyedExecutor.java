@@ -0,0 +1,76 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs tasks in a fixed set of single-threaded lanes.
+ * All tasks with the same key run in the same lane, in the order they were
+ * submitted. Every lane has its own queue of pending tasks.
+ */
+final class KeyedExecutor {
+
+    private final ExecutorService[] lanes;
+    private final CallbackQueue[] queues;
+
+    KeyedExecutor(String name, int size, int capacity, xMsgCallbackPolicy policy) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("invalid number of lanes: " + size);
+        }
+        lanes = new ExecutorService[size];
+        queues = new CallbackQueue[size];
+        for (int i = 0; i < size; i++) {
+            lanes[i] = ThreadUtils.newThreadPool(1, name + "-lane-" + i,
+                                                 new LinkedBlockingQueue<>());
+            queues[i] = new CallbackQueue(lanes[i], 1, capacity, policy);
+        }
+    }
+
+    void execute(Object key, Runnable task) {
+        queues[lane(key)].execute(task);
+    }
+
+    void executeInLane(int lane, Runnable task) {
+        queues[lane].execute(task);
+    }
+
+    int lane(Object key) {
+        return Math.floorMod(Objects.hashCode(key), lanes.length);
+    }
+
+    List<ExecutorService> lanes() {
+        return Collections.unmodifiableList(Arrays.asList(lanes));
+    }
+
+    List<CallbackQueue> queues() {
+        return Collections.unmodifiableList(Arrays.asList(queues));
+    }
+}
@@ -30,22 +30,60 @@ import org.jlab.coda.xmsg.sys.pubsub.xMsgListener;
 import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
 import org.zeromq.ZMsg;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Receives the responses to sync-publish and async-publish requests.
+ * <p>
+ * Every request registers a future for its unique reply topic before the
+ * request is published, and the listener thread completes the future as soon
+ * as the response is received, waking up the requester directly.
+ * The futures are indexed by the numeric sequence at the end of the reply
+ * topic, which is parsed from the raw topic of the response.
+ * Responses that arrive after the request has timed out (or was completed)
+ * are discarded and counted as late responses.
+ * The timeouts of the async requests are expired by a timer wheel,
+ * so the pending requests never outlive their deadline.
+ * <p>
+ * Scatter-gather requests use a single reply topic to collect the responses
+ * of many subscribers, until the expected number of responses is received
+ * or the deadline expires.
+ */
 class ResponseListener extends xMsgListener {
 
+    // sync-publish uses sequences below this value (see xMsgUtil.getUniqueReplyTo)
+    private static final long FIRST_ASYNC_ID = 2_000_000;
+
+    private static final long TIMER_TICK = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
     private final xMsgConnectionFactory factory;
     private final String topic;
+    private final byte[] topicPrefix;
 
-    private final ConcurrentMap<String, xMsgMessage> responses;
+    private final ResponseTable<CompletableFuture<xMsgMessage>> responses =
+            new ResponseTable<>();
+    private final ResponseTable<Gather> gathers = new ResponseTable<>();
+    private final AtomicLong asyncIds = new AtomicLong(FIRST_ASYNC_ID);
+
+    private final TimerWheel timer;
+    private final LongAdder lateResponses = new LongAdder();
 
     ResponseListener(String id, xMsgConnectionFactory factory) {
         super("poll-" + id, factory.getContext());
         this.factory = factory;
+        this.timer = new TimerWheel("poll-" + id + "-timer",
+                                    TIMER_TICK, TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE);
         this.topic = xMsgTopic.build("ret", id).toString();
-        this.responses = new ConcurrentHashMap<>();
+        this.topicPrefix = (topic + xMsgConstants.TOPIC_SEP).getBytes(StandardCharsets.UTF_8);
     }
 
     public void register(xMsgProxyAddress address) throws xMsgException {
@@ -65,22 +103,189 @@ class ResponseListener extends xMsgListener {
         }
     }
 
-    public xMsgMessage waitMessage(String topic, long timeout) throws TimeoutException {
-        int t = 0;
-        while (t < timeout) {
-            xMsgMessage repMsg = responses.remove(topic);
-            if (repMsg != null) {
-                return repMsg;
+    /**
+     * Creates a new unique reply topic for an async-publish request.
+     * The sequence is never reused, so there is no limit to the number of
+     * requests waiting for a response.
+     */
+    public String newReplyTopic() {
+        return topic + xMsgConstants.TOPIC_SEP + asyncIds.getAndIncrement();
+    }
+
+    /**
+     * Registers a new request waiting for a response to the given topic.
+     * It must be called before the request is published.
+     */
+    public CompletableFuture<xMsgMessage> expectResponse(String replyTo) {
+        CompletableFuture<xMsgMessage> response = new CompletableFuture<>();
+        responses.put(replyId(replyTo), response);
+        return response;
+    }
+
+    /**
+     * Registers a new request waiting for a response to the given topic,
+     * that will fail with a {@link TimeoutException} if the response is not
+     * received before the timeout expires.
+     * It must be called before the request is published.
+     * The request is removed if the returned future is cancelled.
+     */
+    public CompletableFuture<xMsgMessage> expectResponse(String replyTo, long timeout) {
+        long id = replyId(replyTo);
+        CompletableFuture<xMsgMessage> response = new CompletableFuture<>();
+        responses.put(id, response);
+        TimerWheel.Timeout expiration = timer.schedule(() -> {
+            if (responses.remove(id, response)) {
+                response.completeExceptionally(
+                        new TimeoutException("no response for timeout = " + timeout));
             }
-            xMsgUtil.sleep(1);
-            t += 1;
+        }, timeout, TimeUnit.MILLISECONDS);
+        response.whenComplete((msg, error) -> {
+            expiration.cancel();
+            responses.remove(id, response);
+        });
+        return response;
+    }
+
+    /**
+     * Registers a new request waiting for many responses to the given topic.
+     * The returned future will be completed with the received responses,
+     * in arrival order, as soon as the given number of responses is received,
+     * or with the responses received so far when the timeout expires.
+     * It must be called before the request is published.
+     * The request is removed if the returned future is cancelled.
+     */
+    public CompletableFuture<List<xMsgMessage>> expectResponses(String replyTo,
+                                                                int responses,
+                                                                long timeout) {
+        long id = replyId(replyTo);
+        Gather gather = new Gather(responses);
+        gathers.put(id, gather);
+        TimerWheel.Timeout expiration = timer.schedule(gather::expire,
+                                                       timeout, TimeUnit.MILLISECONDS);
+        gather.result.whenComplete((msgs, error) -> {
+            expiration.cancel();
+            gathers.remove(id, gather);
+        });
+        return gather.result;
+    }
+
+    /**
+     * Removes the request waiting for a response to the given topic, if any.
+     */
+    public void cancelResponse(String replyTo) {
+        responses.remove(replyId(replyTo));
+    }
+
+    /**
+     * Blocks until the response of the request is received,
+     * or the timeout expires.
+     */
+    public xMsgMessage waitResponse(CompletableFuture<xMsgMessage> response, long timeout)
+            throws xMsgException, TimeoutException {
+        try {
+            return response.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("no response for timeout = " + timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            throw new xMsgException("could not receive response", e.getCause());
         }
-        throw new TimeoutException("no response for timeout = " + t);
+    }
+
+    /**
+     * Gets the number of requests waiting for a response.
+     */
+    public int pendingResponses() {
+        return responses.size() + gathers.size();
+    }
+
+    /**
+     * Gets the number of responses received after their request
+     * had already timed out or had been completed.
+     */
+    public long lateResponses() {
+        return lateResponses.sum();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        timer.stop();
+        xMsgException error = new xMsgException("response listener stopped");
+        responses.clear().forEach(response -> response.completeExceptionally(error));
+        gathers.clear().forEach(gather -> gather.result.completeExceptionally(error));
     }
 
     @Override
     public void handle(ZMsg rawMsg) throws xMsgException {
         xMsgMessage msg = new xMsgMessage(rawMsg);
-        responses.put(msg.getTopic().toString(), msg);
+        long id = replyId(msg.getRawTopic());
+        if (id < 0) {
+            return;
+        }
+        CompletableFuture<xMsgMessage> response = responses.remove(id);
+        if (response != null) {
+            response.complete(msg);
+            return;
+        }
+        Gather gather = gathers.get(id);
+        if (gather == null || !gather.add(msg)) {
+            lateResponses.increment();
+        }
+    }
+
+    private long replyId(String replyTo) {
+        return replyId(replyTo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // parses the sequence of a reply topic of this listener, or returns -1
+    private long replyId(byte[] replyTo) {
+        int start = topicPrefix.length;
+        if (replyTo.length <= start || replyTo.length - start > 18) {
+            return -1;
+        }
+        for (int i = 0; i < start; i++) {
+            if (replyTo[i] != topicPrefix[i]) {
+                return -1;
+            }
+        }
+        long id = 0;
+        for (int i = start; i < replyTo.length; i++) {
+            int digit = replyTo[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+
+    private static final class Gather {
+
+        private final CompletableFuture<List<xMsgMessage>> result = new CompletableFuture<>();
+        private final List<xMsgMessage> received = new ArrayList<>();
+        private final int expected;
+
+        Gather(int expected) {
+            this.expected = expected;
+        }
+
+        synchronized boolean add(xMsgMessage msg) {
+            if (result.isDone()) {
+                return false;
+            }
+            received.add(msg);
+            if (received.size() >= expected) {
+                result.complete(received);
+            }
+            return true;
+        }
+
+        synchronized void expire() {
+            result.complete(received);
+        }
     }
 }
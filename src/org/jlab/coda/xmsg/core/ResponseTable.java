@@ -0,0 +1,233 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pending requests waiting for responses, indexed by the numeric
+ * sequence of their unique reply topic.
+ * <p>
+ * The requests are stored in open-addressing hash tables with primitive
+ * keys, to avoid creating strings and boxed keys for every response.
+ * The table is split in segments with independent locks, so requesters and
+ * the listener thread rarely contend.
+ */
+final class ResponseTable<T> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    ResponseTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds the pending request with the given sequence,
+     * replacing any previous request with the same sequence.
+     */
+    void put(long id, T response) {
+        long hash = hash(id);
+        segment(hash).put(id, hash, response);
+    }
+
+    /**
+     * Gets the pending request with the given sequence.
+     *
+     * @return the request, or null if there is no request
+     */
+    @SuppressWarnings("unchecked")
+    T get(long id) {
+        long hash = hash(id);
+        return (T) segment(hash).get(id, hash);
+    }
+
+    /**
+     * Removes the pending request with the given sequence.
+     *
+     * @return the removed request, or null if there was no request
+     */
+    @SuppressWarnings("unchecked")
+    T remove(long id) {
+        long hash = hash(id);
+        return (T) segment(hash).remove(id, hash, null);
+    }
+
+    /**
+     * Removes the pending request with the given sequence,
+     * only if it is the given request.
+     *
+     * @return true if the request was removed
+     */
+    boolean remove(long id, T response) {
+        long hash = hash(id);
+        return segment(hash).remove(id, hash, response) != null;
+    }
+
+    /**
+     * Removes all pending requests.
+     *
+     * @return the removed requests
+     */
+    @SuppressWarnings("unchecked")
+    List<T> clear() {
+        List<Object> all = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.clear(all);
+        }
+        return (List<T>) all;
+    }
+
+    /**
+     * Gets the number of pending requests.
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+
+    private static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size = 0;
+
+        synchronized void put(long key, long hash, Object value) {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        synchronized Object get(long key, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        // removes the value of the key, if it matches the expected value (or any if null)
+        synchronized Object remove(long key, long hash, Object expected) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    Object value = values[i];
+                    if (expected != null && value != expected) {
+                        return null;
+                    }
+                    delete(i);
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        synchronized void clear(List<Object> all) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    all.add(values[i]);
+                    values[i] = null;
+                }
+            }
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        // backward-shift deletion, so lookups never need tombstones
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int i = (hole + 1) & mask;
+            while (values[i] != null) {
+                int home = (int) hash(keys[i]) & mask;
+                // move the entry to the hole if the hole is between its home and its slot
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[hole] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = (int) hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
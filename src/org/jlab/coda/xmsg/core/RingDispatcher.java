@@ -0,0 +1,356 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A preallocated ring buffer between the subscriptions and the callback workers.
+ * <p>
+ * The subscriptions claim the next sequence of the ring, store the callback and
+ * the message into the preallocated slot, and mark the sequence as published.
+ * A fixed number of workers (long-running tasks in the callback executor)
+ * claim ranges of consecutive published sequences and run the callbacks of the
+ * whole range, so no task object is created and no lock is taken per message.
+ * <p>
+ * A slot is reused only when all workers are past its sequence.
+ * When the ring is full, the overflow policy is applied
+ * ({@link xMsgCallbackPolicy#DROP_OLDEST} is not supported).
+ */
+final class RingDispatcher {
+
+    private static final long BLOCK_TIMEOUT = 100_000; // 100 microseconds
+    private static final long WAIT_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long REJECTED = -1;
+    private static final long DROPPED = -2;
+    private static final long CALLER_RUNS = -3;
+
+    private final ExecutorService executor;
+    private final int workers;
+    private final int maxBatch;
+    private final xMsgCallbackPolicy policy;
+    private final xMsgWaitStrategy waitStrategy;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final int shift;
+
+    // the lap of the last published sequence of every slot
+    private final AtomicIntegerArray published;
+    // the last sequence claimed by the subscriptions
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // the last sequence claimed by the workers
+    private final AtomicLong workSequence = new AtomicLong(-1);
+    // every worker has processed all its claimed sequences up to this value
+    private final AtomicLongArray workerSequences;
+    private volatile long gatingCache = -1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running = true;
+
+
+    private static final class Slot {
+
+        private xMsgCallBack callback;
+        private xMsgMessage msg;
+        private xMsgBatchCallBack batchCallback;
+        private List<xMsgMessage> msgs;
+
+        void run() {
+            if (callback != null) {
+                xMsgCallBack cb = callback;
+                xMsgMessage m = msg;
+                callback = null;
+                msg = null;
+                xMsg.runCallback(cb, m);
+            } else if (batchCallback != null) {
+                xMsgBatchCallBack cb = batchCallback;
+                List<xMsgMessage> m = msgs;
+                batchCallback = null;
+                msgs = null;
+                xMsg.runCallback(cb, m);
+            }
+        }
+    }
+
+
+    /**
+     * Creates a ring buffer whose callbacks run in the given executor.
+     * The capacity is rounded up to the next power of two.
+     *
+     * @param executor the executor that runs the workers
+     * @param workers the number of workers
+     * @param capacity the minimum number of slots of the ring
+     * @param policy what to do when the ring is full
+     * @param maxBatch the maximum number of slots claimed at once by a worker
+     * @param waitStrategy how the workers wait for new messages
+     */
+    RingDispatcher(ExecutorService executor,
+                   int workers,
+                   int capacity,
+                   xMsgCallbackPolicy policy,
+                   int maxBatch,
+                   xMsgWaitStrategy waitStrategy) {
+        if (policy == xMsgCallbackPolicy.DROP_OLDEST) {
+            throw new IllegalArgumentException("unsupported ring policy: " + policy);
+        }
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.executor = executor;
+        this.workers = workers;
+        this.maxBatch = maxBatch;
+        this.policy = policy;
+        this.waitStrategy = waitStrategy;
+
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.workerSequences = new AtomicLongArray(workers);
+        for (int i = 0; i < workers; i++) {
+            workerSequences.set(i, -1);
+        }
+    }
+
+    /**
+     * Starts the workers.
+     */
+    void start() {
+        for (int i = 0; i < workers; i++) {
+            final int worker = i;
+            executor.execute(() -> work(worker));
+        }
+    }
+
+    /**
+     * Stops accepting new messages.
+     * The workers exit after all published callbacks are executed.
+     */
+    void stop() {
+        running = false;
+        signalWorkers();
+    }
+
+    /**
+     * Publishes a message to be processed by the given callback.
+     *
+     * @param callback the user callback
+     * @param msg the received message
+     */
+    void execute(xMsgCallBack callback, xMsgMessage msg) {
+        long seq = claim();
+        if (seq < 0) {
+            if (seq == CALLER_RUNS) {
+                xMsg.runCallback(callback, msg);
+            }
+            return;
+        }
+        Slot slot = slots[(int) seq & mask];
+        slot.callback = callback;
+        slot.msg = msg;
+        publish(seq);
+    }
+
+    /**
+     * Publishes a group of messages to be processed by the given callback.
+     *
+     * @param callback the user callback
+     * @param msgs the received messages
+     */
+    void execute(xMsgBatchCallBack callback, List<xMsgMessage> msgs) {
+        long seq = claim();
+        if (seq < 0) {
+            if (seq == CALLER_RUNS) {
+                xMsg.runCallback(callback, msgs);
+            }
+            return;
+        }
+        Slot slot = slots[(int) seq & mask];
+        slot.batchCallback = callback;
+        slot.msgs = msgs;
+        publish(seq);
+    }
+
+    private long claim() {
+        while (true) {
+            if (!running) {
+                rejected.increment();
+                return REJECTED;
+            }
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - slots.length;
+            if (wrapPoint > gatingCache) {
+                long gating = minimumSequence();
+                gatingCache = gating;
+                if (wrapPoint > gating) {
+                    switch (policy) {
+                        case BLOCK:
+                            LockSupport.parkNanos(this, BLOCK_TIMEOUT);
+                            continue;
+                        case DROP_NEWEST:
+                            dropped.increment();
+                            return DROPPED;
+                        case CALLER_RUNS:
+                            callerRuns.increment();
+                            return CALLER_RUNS;
+                        default:
+                            throw new IllegalStateException("invalid policy: " + policy);
+                    }
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long minimumSequence() {
+        long min = workSequence.get();
+        for (int i = 0; i < workers; i++) {
+            min = Math.min(min, workerSequences.get(i));
+        }
+        return min;
+    }
+
+    private void publish(long seq) {
+        published.set((int) seq & mask, (int) (seq >>> shift));
+        if (waiters.get() > 0) {
+            signalWorkers();
+        }
+    }
+
+    private boolean isPublished(long seq) {
+        return published.get((int) seq & mask) == (int) (seq >>> shift);
+    }
+
+    private void signalWorkers() {
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work(int worker) {
+        while (true) {
+            long current = workSequence.get();
+            workerSequences.set(worker, current);
+            long next = current + 1;
+            if (!isPublished(next)) {
+                if (!running && cursor.get() == current) {
+                    return;
+                }
+                if (!awaitPublished(next)) {
+                    return;
+                }
+                continue;
+            }
+            // claim all the consecutive published sequences, up to the limit
+            long end = next;
+            long limit = next + maxBatch - 1;
+            while (end < limit && isPublished(end + 1)) {
+                end++;
+            }
+            if (workSequence.compareAndSet(current, end)) {
+                for (long seq = next; seq <= end; seq++) {
+                    slots[(int) seq & mask].run();
+                }
+            }
+        }
+    }
+
+    // returns false if the worker was interrupted
+    private boolean awaitPublished(long seq) {
+        long spinTime = waitStrategy.spinTime();
+        if (spinTime > 0) {
+            long deadline = System.nanoTime() + spinTime;
+            while (System.nanoTime() - deadline < 0) {
+                if (isPublished(seq) || !running) {
+                    return true;
+                }
+            }
+        }
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            long remaining = WAIT_TIMEOUT;
+            while (!isPublished(seq) && running && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    int size() {
+        return (int) (cursor.get() - workSequence.get());
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    long callerRuns() {
+        return callerRuns.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+}
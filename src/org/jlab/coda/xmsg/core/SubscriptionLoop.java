@@ -0,0 +1,196 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Context;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An event loop that polls the sockets of many subscriptions in one thread.
+ * <p>
+ * The sockets are only used by the loop thread after they are registered.
+ * Registration changes are sent to the loop as commands, through a
+ * {@link CommandPipe}. The poller is recreated every time the
+ * set of subscriptions changes, so the indexes of the poller always match
+ * the registered subscriptions.
+ */
+final class SubscriptionLoop {
+
+    private final Context context;
+    private final Thread thread;
+    private final CommandPipe pipe;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    // only used by the loop thread
+    private final List<xMsgSubscription> subscriptions = new ArrayList<>();
+    private xMsgSubscription[] active = new xMsgSubscription[0];
+    private Poller poller;
+
+    private volatile boolean isRunning = false;
+
+    SubscriptionLoop(String name, Context context) {
+        this.context = context;
+        this.thread = xMsgUtil.newThread(name, this::run);
+        this.pipe = new CommandPipe(context);
+    }
+
+    void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the loop thread. All subscriptions should have been unregistered.
+     */
+    void stop() {
+        isRunning = false;
+        pipe.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pipe.close();
+        }
+    }
+
+    /**
+     * Adds the subscription to the sockets polled by the loop.
+     */
+    void register(xMsgSubscription subscription) {
+        size.incrementAndGet();
+        pipe.execute(() -> {
+            subscriptions.add(subscription);
+            updatePoller();
+        });
+    }
+
+    /**
+     * Removes the subscription from the sockets polled by the loop, and then
+     * runs the given cleanup action in the loop thread.
+     * If this is called from outside the loop, it blocks until the cleanup
+     * action has been executed.
+     * If the loop thread has terminated, the cleanup action is run by the
+     * caller.
+     */
+    void unregister(xMsgSubscription subscription, Runnable cleanup) {
+        size.decrementAndGet();
+        if (!isRunning || !thread.isAlive()) {
+            cleanup.run();
+            return;
+        }
+        boolean done = pipe.invoke(() -> {
+            if (subscriptions.remove(subscription)) {
+                updatePoller();
+            }
+            cleanup.run();
+        }, thread);
+        if (!done && !thread.isAlive()) {
+            cleanup.run();
+        }
+    }
+
+    /**
+     * Queues the command to be run in the loop thread.
+     *
+     * @return a latch that is released when the command has been executed
+     * @see #await
+     */
+    CountDownLatch submit(Runnable command) {
+        return pipe.submit(command);
+    }
+
+    /**
+     * Blocks until a submitted command has been executed,
+     * or the loop thread has terminated.
+     *
+     * @return true if the command was executed
+     */
+    boolean await(CountDownLatch done) {
+        return CommandPipe.await(done, thread);
+    }
+
+    /**
+     * Checks if the caller is running in the loop thread.
+     */
+    boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Gets the number of subscriptions handled by this loop.
+     */
+    int size() {
+        return size.get();
+    }
+
+    private void updatePoller() {
+        Poller newPoller = context.poller(subscriptions.size() + 1);
+        newPoller.register(pipe.socket(), Poller.POLLIN);
+        for (xMsgSubscription subscription : subscriptions) {
+            newPoller.register(subscription.getSocket(), Poller.POLLIN);
+        }
+        if (poller != null) {
+            poller.close();
+        }
+        poller = newPoller;
+        active = subscriptions.toArray(new xMsgSubscription[0]);
+    }
+
+    private void run() {
+        updatePoller();
+        try {
+            while (isRunning) {
+                try {
+                    poller.poll(-1);
+                    boolean wakeup = poller.pollin(0);
+                    xMsgSubscription[] ready = active;
+                    for (int i = 0; i < ready.length; i++) {
+                        if (poller.pollin(i + 1)) {
+                            ready[i].receiveReady();
+                        }
+                    }
+                    if (wakeup) {
+                        pipe.runCommands();
+                    }
+                } catch (ZMQException e) {
+                    if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                        break;
+                    }
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            pipe.runCommands();
+            poller.close();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel to expire the pending requests.
+ * <p>
+ * The timeouts are stored in a circular array of buckets, one bucket per tick,
+ * and a single thread advances the wheel every tick and expires the timeouts
+ * of the current bucket. Scheduling and cancelling a timeout are O(1):
+ * the requesters only push the timeout into a lock-free queue, and the timer
+ * thread links it into (or unlinks it from) its bucket on the next tick.
+ * Timeouts longer than a full turn of the wheel stay in their bucket for the
+ * remaining rounds.
+ * <p>
+ * Timeouts are approximate: they expire on the first tick after the deadline.
+ * The tasks run on the timer thread, thus they must be short.
+ */
+final class TimerWheel {
+
+    // the maximum number of new timeouts added to the wheel per tick
+    private static final int MAX_TRANSFERS = 100_000;
+
+    private final String name;
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final Object startLock = new Object();
+    private volatile boolean started = false;
+    private volatile boolean stopped = false;
+    private long startTime;
+    private Thread worker;
+
+    // only used by the timer thread
+    private long tick = 0;
+
+    /**
+     * Creates a new timer wheel.
+     * The timer thread is started when the first timeout is scheduled.
+     *
+     * @param name the name of the timer thread
+     * @param tickDuration the duration of a tick
+     * @param unit the unit of the tick duration
+     * @param ticksPerWheel the number of buckets (rounded up to a power of two)
+     */
+    TimerWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("invalid tick duration: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 20)) {
+            throw new IllegalArgumentException("invalid ticks per wheel: " + ticksPerWheel);
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (ticksPerWheel == 1) {
+            size = 1;
+        }
+        this.name = name;
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Schedules the task to run once the given delay has elapsed.
+     *
+     * @return the timeout handler, to cancel the task
+     * @throws IllegalStateException if the timer was stopped
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!started) {
+            start();
+        }
+        if (stopped) {
+            throw new IllegalStateException("timer is stopped");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread. The pending timeouts will never expire.
+     */
+    void stop() {
+        synchronized (startLock) {
+            stopped = true;
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    private void start() {
+        synchronized (startLock) {
+            if (!started && !stopped) {
+                startTime = System.nanoTime();
+                worker = ThreadUtils.newThread(name, this::run);
+                worker.setDaemon(true);
+                worker.start();
+                started = true;
+            }
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                break;
+            }
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    // returns the current time since start, or -1 if the timer was stopped
+    private long waitForNextTick() {
+        long deadline = tickDuration * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepTime = deadline - now;
+            if (sleepTime <= 0) {
+                return now;
+            }
+            LockSupport.parkNanos(this, sleepTime);
+            if (stopped) {
+                return -1;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long expirationTick = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (expirationTick - tick) / wheel.length;
+            // a timeout already past its deadline expires on the current tick
+            long ticks = Math.max(expirationTick, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+
+    /**
+     * A task scheduled on the timer wheel.
+     */
+    final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Runnable task;
+        private final long deadline;
+
+        // only used by the timer thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         * The timeout is removed from the wheel on the next tick.
+         *
+         * @return true if the task was cancelled
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(WAITING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+
+    // a doubly-linked list of timeouts, only used by the timer thread
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
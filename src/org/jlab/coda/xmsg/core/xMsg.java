@@ -25,27 +25,41 @@ package org.jlab.coda.xmsg.core;
 import org.jlab.coda.xmsg.data.xMsgRegInfo;
 import org.jlab.coda.xmsg.data.xMsgRegQuery;
 import org.jlab.coda.xmsg.data.xMsgRegRecord;
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
 import org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration;
 import org.jlab.coda.xmsg.excp.xMsgException;
 import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
 import org.jlab.coda.xmsg.net.xMsgContext;
+import org.jlab.coda.xmsg.net.xMsgDirectAddress;
 import org.jlab.coda.xmsg.net.xMsgProxyAddress;
 import org.jlab.coda.xmsg.net.xMsgRegAddress;
+import org.jlab.coda.xmsg.net.xMsgSocketFactory;
 import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
 import org.jlab.coda.xmsg.sys.regdis.xMsgRegDriver;
 import org.jlab.coda.xmsg.sys.regdis.xMsgRegFactory;
 import org.zeromq.ZMQException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The main xMsg pub/sub actor.
@@ -114,16 +128,37 @@ public class xMsg implements AutoCloseable {
     private final xMsgSetup setup;
 
     // thread pool
-    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService threadPool;
+
+    // pending callbacks
+    private final CallbackQueue callbackQueue;
+
+    // ordered lanes for the keyed callback mode
+    private final KeyedExecutor keyedPool;
+
+    // preallocated ring buffer for the ring callback mode
+    private final RingDispatcher ringDispatcher;
 
     private final ConnectionManager connectionManager;
 
+    // map of sender threads for async publication (one per stripe)
+    private final ConcurrentMap<xMsgProxyAddress, AsyncPublisher[]> asyncPublishers;
+
     // map of active subscriptions
     private final ConcurrentMap<String, xMsgSubscription> mySubscriptions;
+
+    // shared threads to receive messages (empty if using a thread per subscription)
+    private final SubscriptionLoop[] subscriptionLoops;
     private final xMsgCallbackMode callbackMode;
 
     private final ResponseListener syncPubListener;
 
+    // direct request/reply endpoints and connections (bypassing the proxy)
+    private final xMsgConnectionFactory connectionFactory;
+    private xMsgSocketFactory socketFactory;
+    private final ConcurrentMap<String, xMsgResponder> myResponders;
+    private DirectClient directClient;
+
     /**
      * Creates an actor with default settings.
      * The local node and the standard ports will be used for both
@@ -234,20 +269,68 @@ public class xMsg implements AutoCloseable {
         this.myId = xMsgUtil.encodeIdentity(setup.registrarAddress().toString(), name);
         this.setup = setup;
 
-        // create fixed size thread pool
-        this.threadPool = xMsgUtil.newThreadPool(setup.poolSize(), name);
-        this.threadPool.setRejectedExecutionHandler(new RejectedCallbackHandler());
+        // create the callback executor (fixed size thread pool by default)
+        this.threadPool = setup.callbackExecutor().newExecutor(name, setup.poolSize());
+        this.callbackQueue = new CallbackQueue(threadPool,
+                                               setup.poolSize(),
+                                               setup.callbackQueueSize(),
+                                               setup.callbackPolicy());
+        if (setup.subscriptionMode() == xMsgCallbackMode.KEYED) {
+            this.keyedPool = new KeyedExecutor(name, setup.poolSize(),
+                                               setup.callbackQueueSize(),
+                                               setup.callbackPolicy());
+        } else {
+            this.keyedPool = null;
+        }
+        if (setup.subscriptionMode() == xMsgCallbackMode.RING) {
+            int ringSize = setup.callbackQueueSize() > 0
+                    ? setup.callbackQueueSize()
+                    : xMsgConstants.DEFAULT_RING_SIZE;
+            this.ringDispatcher = new RingDispatcher(threadPool,
+                                                     setup.poolSize(),
+                                                     ringSize,
+                                                     setup.callbackPolicy(),
+                                                     setup.ringBatchSize(),
+                                                     setup.ringWaitStrategy());
+            this.ringDispatcher.start();
+        } else {
+            this.ringDispatcher = null;
+        }
 
         // create the connection pool
         this.connectionManager = new ConnectionManager(factory, setup.connectionSetup());
+        this.asyncPublishers = new ConcurrentHashMap<>();
+
+        // every stripe should get its own I/O thread
+        // (it has no effect if the context is already in use)
+        // the global context is shared by all actors and must not be modified
+        if (setup.publishStripes() > 1) {
+            xMsgContext context = factory.getContext();
+            if (context != xMsgContext.getInstance()
+                    && context.getIOThreads() < setup.publishStripes()) {
+                context.setIOThreads(setup.publishStripes());
+            }
+        }
 
         // create the responses listener
         this.syncPubListener = new ResponseListener(myId, factory);
         this.syncPubListener.start();
 
+        // direct endpoints are created on demand
+        this.connectionFactory = factory;
+        this.myResponders = new ConcurrentHashMap<>();
+
         // create the map of running subscriptions
         this.mySubscriptions = new ConcurrentHashMap<>();
         this.callbackMode = setup.subscriptionMode();
+
+        // start the shared threads to receive messages
+        this.subscriptionLoops = new SubscriptionLoop[setup.subscriptionThreads()];
+        for (int i = 0; i < subscriptionLoops.length; i++) {
+            subscriptionLoops[i] = new SubscriptionLoop("sub-" + name + "-loop-" + i,
+                                                        factory.getContext().getContext());
+            subscriptionLoops[i].start();
+        }
     }
 
     /**
@@ -268,7 +351,24 @@ public class xMsg implements AutoCloseable {
      */
     public void destroy(int linger) {
         unsubscribeAll();
+        myResponders.values().forEach(xMsgResponder::stop);
+        myResponders.clear();
+        for (SubscriptionLoop loop : subscriptionLoops) {
+            loop.stop();
+        }
         terminateCallbacks();
+        for (AsyncPublisher[] stripes : asyncPublishers.values()) {
+            for (AsyncPublisher publisher : stripes) {
+                publisher.stop(linger);
+            }
+        }
+        asyncPublishers.clear();
+        synchronized (this) {
+            if (directClient != null) {
+                directClient.stop();
+                directClient = null;
+            }
+        }
         syncPubListener.stop();
         connectionManager.destroy(linger);
     }
@@ -349,6 +449,46 @@ public class xMsg implements AutoCloseable {
         connection.destroy();
     }
 
+    /**
+     * Creates a publisher for the given topic and metadata,
+     * using a connection to the default proxy.
+     * The topic and metadata will be encoded once and reused by all messages
+     * sent with the publisher.
+     *
+     * @param topic the topic of the published messages
+     * @param metaData the metadata of the published messages
+     * @return a new publisher bound to the given topic and metadata
+     * @throws xMsgException if a new connection could not be created
+     */
+    public xMsgPublisher createPublisher(xMsgTopic topic, xMsgMeta.Builder metaData)
+            throws xMsgException {
+        return createPublisher(setup.proxyAddress(), topic, metaData);
+    }
+
+    /**
+     * Creates a publisher for the given topic and metadata,
+     * using a connection to the specified proxy.
+     * The topic and metadata will be encoded once and reused by all messages
+     * sent with the publisher.
+     *
+     * @param address the address of the proxy
+     * @param topic the topic of the published messages
+     * @param metaData the metadata of the published messages
+     * @return a new publisher bound to the given topic and metadata
+     * @throws xMsgException if a new connection could not be created
+     */
+    public xMsgPublisher createPublisher(xMsgProxyAddress address,
+                                         xMsgTopic topic,
+                                         xMsgMeta.Builder metaData) throws xMsgException {
+        xMsgConnection connection = getConnection(address);
+        try {
+            return new xMsgPublisher(connection, topic, metaData, setup.compression());
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
     /**
      * Publishes a message through the default proxy connection.
      *
@@ -384,9 +524,233 @@ public class xMsg implements AutoCloseable {
     public void publish(xMsgConnection connection, xMsgMessage msg) throws xMsgException {
         // just make sure that receiver knows that this is not a sync request.
         // need this in case we reuse messages.
-        msg.getMetaData().clearReplyTo();
+        msg.clearReplyTo();
+
+        connection.publish(setup.compression().compress(msg));
+    }
+
+    /**
+     * Publishes a batch of messages through the default proxy connection.
+     * A single connection is used to send all messages, in order.
+     *
+     * @param messages the messages to be published
+     * @throws xMsgException if the request failed
+     */
+    public void publish(Collection<xMsgMessage> messages) throws xMsgException {
+        try (xMsgConnection connection = getConnection()) {
+            publish(connection, messages);
+        }
+    }
+
+    /**
+     * Publishes a batch of messages through the specified proxy.
+     * A single connection is used to send all messages, in order.
+     *
+     * @param address the address to the proxy
+     * @param messages the messages to be published
+     * @throws xMsgException if the request failed
+     */
+    public void publish(xMsgProxyAddress address, Collection<xMsgMessage> messages)
+            throws xMsgException {
+        try (xMsgConnection connection = getConnection(address)) {
+            publish(connection, messages);
+        }
+    }
+
+    /**
+     * Publishes a batch of messages through the specified proxy connection.
+     * All messages are sent in order, one after the other,
+     * without returning the connection to the pool between them.
+     * <p>
+     * If a message cannot be published, the connection will be destroyed and
+     * the remaining messages will not be sent.
+     *
+     * @param connection the connection to the proxy
+     * @param messages the messages to be published
+     * @throws xMsgException if the request failed
+     */
+    public void publish(xMsgConnection connection, Collection<xMsgMessage> messages)
+            throws xMsgException {
+        // just make sure that receivers know that these are not sync requests.
+        List<xMsgMessage> batch = new ArrayList<>(messages.size());
+        for (xMsgMessage msg : messages) {
+            msg.clearReplyTo();
+            batch.add(setup.compression().compress(msg));
+        }
+
+        connection.publishBatch(batch);
+    }
+
+    /**
+     * Publishes a message through many proxies at the same time.
+     * <p>
+     * The message is encoded only once, and the same frames are sent
+     * concurrently to all proxies, by the background sender threads used by
+     * {@link #publishAsync(xMsgProxyAddress, xMsgMessage) publishAsync}.
+     * This method blocks until the message has been sent to all proxies.
+     * <p>
+     * A failure to publish the message through one proxy does not stop the
+     * publication through the other proxies. The result contains the error
+     * for every proxy that could not publish the message.
+     *
+     * @param addresses the addresses to the proxies
+     * @param msg the message to be published
+     * @return the errors of the failed proxies, or an empty map if the message
+     *         was published through all proxies
+     */
+    public Map<xMsgProxyAddress, xMsgException> publish(Collection<xMsgProxyAddress> addresses,
+                                                        xMsgMessage msg) {
+        Map<xMsgProxyAddress, xMsgException> errors = new LinkedHashMap<>();
+        publishAsync(addresses, msg).forEach((address, result) -> {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof xMsgException) {
+                    errors.put(address, (xMsgException) cause);
+                } else {
+                    errors.put(address, new xMsgException("could not publish message", cause));
+                }
+            }
+        });
+        return errors;
+    }
+
+    /**
+     * Publishes a message through the default proxy without blocking.
+     * The message will be sent by a background thread.
+     *
+     * @param msg the message to be published
+     * @return a future that completes when the message has been sent,
+     *         or completes exceptionally if the message could not be published
+     * @throws xMsgException if the connection to the proxy could not be created
+     * @see #publishAsync(xMsgProxyAddress, xMsgMessage)
+     */
+    public CompletableFuture<Void> publishAsync(xMsgMessage msg) throws xMsgException {
+        return publishAsync(setup.proxyAddress(), msg);
+    }
+
+    /**
+     * Publishes a message through the specified proxy without blocking.
+     * <p>
+     * There is a single background sender thread (and a single connection)
+     * per proxy, shared by all the threads that publish asynchronously to that
+     * proxy. The message is enqueued and this method returns immediately.
+     * The topic and metadata of the message are encoded before returning, so
+     * the message can be reused, but the data must not be modified until the
+     * returned future has been completed.
+     * <p>
+     * If {@link xMsgSetup.Builder#withPublishBatching publish batching} is
+     * enabled, consecutive messages with the same topic may be coalesced and
+     * sent together. Subscribers receive them as individual messages.
+     * <p>
+     * If {@link xMsgSetup.Builder#withPublishStripes publish striping} is
+     * enabled, there are many sender threads and connections per proxy, and
+     * the message is sent by the one selected by the hash of its topic.
+     * <p>
+     * The future is completed by the sender thread. Dependent actions that
+     * take a long time should use the {@code async} methods of the future,
+     * to avoid blocking the sender thread.
+     * The sender thread is created the first time a message is published to
+     * the proxy, and it is stopped when the actor is destroyed, after all the
+     * enqueued messages have been sent.
+     *
+     * @param address the address to the proxy
+     * @param msg the message to be published
+     * @return a future that completes when the message has been sent,
+     *         or completes exceptionally if the message could not be published
+     * @throws xMsgException if the connection to the proxy could not be created
+     */
+    public CompletableFuture<Void> publishAsync(xMsgProxyAddress address, xMsgMessage msg)
+            throws xMsgException {
+        // just make sure that receiver knows that this is not a sync request.
+        msg.clearReplyTo();
+
+        return getAsyncPublisher(address, msg.getTopic())
+                .publish(setup.compression().compress(msg));
+    }
+
+    /**
+     * Publishes a message through many proxies without blocking.
+     * <p>
+     * The message is encoded only once, and the same frames are enqueued into
+     * the background sender thread of every proxy, to be sent concurrently.
+     * As with {@link #publishAsync(xMsgProxyAddress, xMsgMessage)}, the data
+     * must not be modified until all the returned futures have been completed.
+     *
+     * @param addresses the addresses to the proxies
+     * @param msg the message to be published
+     * @return the future result of the publication through every proxy
+     */
+    public Map<xMsgProxyAddress, CompletableFuture<Void>> publishAsync(
+            Collection<xMsgProxyAddress> addresses, xMsgMessage msg) {
+        // just make sure that receiver knows that this is not a sync request.
+        msg.clearReplyTo();
 
-        connection.publish(msg);
+        xMsgMessage outMsg = setup.compression().compress(msg);
+        byte[] topic = outMsg.encodeTopic();
+        byte[] metaData = outMsg.encodeMetaData();
+
+        Map<xMsgProxyAddress, CompletableFuture<Void>> results = new LinkedHashMap<>();
+        for (xMsgProxyAddress address : addresses) {
+            if (results.containsKey(address)) {
+                continue;
+            }
+            CompletableFuture<Void> result;
+            try {
+                result = getAsyncPublisher(address, outMsg.getTopic())
+                        .publish(outMsg, topic, metaData);
+            } catch (xMsgException e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+            results.put(address, result);
+        }
+        return results;
+    }
+
+    private AsyncPublisher getAsyncPublisher(xMsgProxyAddress address, xMsgTopic topic)
+            throws xMsgException {
+        AsyncPublisher[] stripes = asyncPublishers.get(address);
+        if (stripes == null) {
+            synchronized (asyncPublishers) {
+                stripes = asyncPublishers.get(address);
+                if (stripes == null) {
+                    stripes = createAsyncPublishers(address);
+                    asyncPublishers.put(address, stripes);
+                }
+            }
+        }
+        if (stripes.length == 1) {
+            return stripes[0];
+        }
+        return stripes[Math.floorMod(topic.hashCode(), stripes.length)];
+    }
+
+    private AsyncPublisher[] createAsyncPublishers(xMsgProxyAddress address)
+            throws xMsgException {
+        int size = setup.publishStripes();
+        AsyncPublisher[] stripes = new AsyncPublisher[size];
+        try {
+            for (int i = 0; i < size; i++) {
+                xMsgProxyDriver connection = connectionManager.createProxyConnection(address);
+                String name = "pub-" + myName + "-" + address;
+                if (size > 1) {
+                    name += "-" + i;
+                }
+                stripes[i] = new AsyncPublisher(name, connectionManager, connection,
+                                                setup.batchSize(), setup.batchDelay());
+                stripes[i].start();
+            }
+        } catch (xMsgException e) {
+            for (AsyncPublisher publisher : stripes) {
+                if (publisher != null) {
+                    publisher.stop(0);
+                }
+            }
+            throw e;
+        }
+        return stripes;
     }
 
     /**
@@ -461,20 +825,293 @@ public class xMsg implements AutoCloseable {
         // set the return address as replyTo in the xMsgMessage
         msg.getMetaData().setReplyTo(returnAddress);
 
+        // the response may arrive before the publish call returns
+        CompletableFuture<xMsgMessage> response = syncPubListener.expectResponse(returnAddress);
         try {
             // subscribe to the returnAddress
             syncPubListener.register(connection.getAddress());
 
             // it must be the internal publish, to keep the replyTo field
-            connection.publish(msg);
+            connection.publish(setup.compression().compress(msg));
 
             // wait for the response
-            return syncPubListener.waitMessage(returnAddress, timeout);
+            return syncPubListener.waitResponse(response, timeout);
+        } finally {
+            syncPubListener.cancelResponse(returnAddress);
+            msg.getMetaData().clearReplyTo();
+        }
+    }
+
+    /**
+     * Sends a request directly to the endpoint of a {@link xMsgResponder}
+     * and blocks waiting for a response.
+     * <p>
+     * The request does not go through a proxy: it is sent to the endpoint,
+     * and the response is received back from the same connection, in a single
+     * network round trip. The direct address of a responder can be obtained
+     * with {@link xMsgRegRecord#directAddress()}.
+     * <p>
+     * If the message is backed by a byte buffer, the data is sent by a
+     * background thread without copying it, so the buffer must not be
+     * modified until the response is received.
+     * <p>
+     * This method will throw if a response is not received before the timeout
+     * expires.
+     *
+     * @param address the address of the direct endpoint
+     * @param msg the message to be sent
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return the response message
+     * @throws xMsgException if the request could not be sent
+     *                       or the response could not be received
+     * @throws TimeoutException if a response is not received in the given time
+     */
+    public xMsgMessage syncPublish(xMsgDirectAddress address, xMsgMessage msg, long timeout)
+            throws xMsgException, TimeoutException {
+        String returnAddress = syncPubListener.newReplyTopic();
+        msg.getMetaData().setReplyTo(returnAddress);
+
+        CompletableFuture<xMsgMessage> response = syncPubListener.expectResponse(returnAddress);
+        try {
+            getDirectClient().send(address, setup.compression().compress(msg), response);
+            return syncPubListener.waitResponse(response, timeout);
+        } finally {
+            syncPubListener.cancelResponse(returnAddress);
+            msg.getMetaData().clearReplyTo();
+        }
+    }
+
+    private synchronized DirectClient getDirectClient() {
+        if (directClient == null) {
+            directClient = new DirectClient("direct-" + myName, getSocketFactory(),
+                                            syncPubListener, setup.drainLimit());
+            directClient.start();
+        }
+        return directClient;
+    }
+
+    private synchronized xMsgSocketFactory getSocketFactory() {
+        if (socketFactory == null) {
+            socketFactory = new xMsgSocketFactory(connectionFactory.getContext().getContext());
+        }
+        return socketFactory;
+    }
+
+    /**
+     * Publishes a request through the default proxy and returns a future
+     * that will be completed with the response.
+     * <p>
+     * Unlike {@link #syncPublish(xMsgMessage, long) syncPublish}, this method
+     * does not block waiting for the response, so many requests can be in
+     * flight at the same time, and the responses can arrive in any order.
+     * Unlike {@link #publishAsync(xMsgMessage) publishAsync}, the message is
+     * published before the method returns, and the future is completed with
+     * the response of the subscriber, not when the message is sent.
+     * <p>
+     * The subscriber must publish the response to the topic given by the
+     * {@code replyto} metadata field, through the same proxy.
+     * If a response is not received before the timeout expires, the future
+     * will be completed exceptionally with a {@link TimeoutException}.
+     * A late response is discarded.
+     *
+     * @param msg the message to be published
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return the future response
+     * @throws xMsgException if the message could not be published
+     */
+    public CompletableFuture<xMsgMessage> asyncPublish(xMsgMessage msg, long timeout)
+            throws xMsgException {
+        return asyncPublish(setup.proxyAddress(), msg, timeout);
+    }
+
+    /**
+     * Publishes a request through the specified proxy and returns a future
+     * that will be completed with the response.
+     *
+     * @param address the address to the proxy
+     * @param msg the message to be published
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return the future response
+     * @throws xMsgException if the message could not be published
+     * @see #asyncPublish(xMsgMessage, long)
+     */
+    public CompletableFuture<xMsgMessage> asyncPublish(xMsgProxyAddress address,
+                                                       xMsgMessage msg,
+                                                       long timeout)
+            throws xMsgException {
+        String returnAddress = syncPubListener.newReplyTopic();
+        msg.getMetaData().setReplyTo(returnAddress);
+        try {
+            CompletableFuture<xMsgMessage> response =
+                    syncPubListener.expectResponse(returnAddress, timeout);
+            try (xMsgConnection connection = getConnection(address)) {
+                syncPubListener.register(address);
+                connection.publish(setup.compression().compress(msg));
+            } catch (xMsgException | RuntimeException e) {
+                syncPubListener.cancelResponse(returnAddress);
+                response.cancel(false);
+                throw e;
+            }
+            return response;
+        } finally {
+            msg.getMetaData().clearReplyTo();
+        }
+    }
+
+    /**
+     * Sends a request directly to the endpoint of a {@link xMsgResponder}
+     * and returns a future that will be completed with the response.
+     * <p>
+     * The request does not go through a proxy: it is sent to the endpoint,
+     * and the response is received back from the same connection, in a single
+     * network round trip. The direct address of a responder can be obtained
+     * with {@link xMsgRegRecord#directAddress()}.
+     * If a response is not received before the timeout expires, the future
+     * will be completed exceptionally with a {@link TimeoutException}.
+     * If the request cannot be sent to the endpoint, the future will be
+     * completed exceptionally with a {@link xMsgException}.
+     * <p>
+     * If the message is backed by a byte buffer, the data is sent by a
+     * background thread without copying it, so the buffer must not be
+     * modified until the future is completed.
+     *
+     * @param address the address of the direct endpoint
+     * @param msg the message to be sent
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return the future response
+     * @see #asyncPublish(xMsgMessage, long)
+     */
+    public CompletableFuture<xMsgMessage> asyncPublish(xMsgDirectAddress address,
+                                                       xMsgMessage msg,
+                                                       long timeout) {
+        String returnAddress = syncPubListener.newReplyTopic();
+        msg.getMetaData().setReplyTo(returnAddress);
+        try {
+            CompletableFuture<xMsgMessage> response =
+                    syncPubListener.expectResponse(returnAddress, timeout);
+            try {
+                getDirectClient().send(address, setup.compression().compress(msg), response);
+            } catch (RuntimeException e) {
+                syncPubListener.cancelResponse(returnAddress);
+                response.cancel(false);
+                throw e;
+            }
+            return response;
         } finally {
             msg.getMetaData().clearReplyTo();
         }
     }
 
+    /**
+     * Publishes a request through the default proxy and returns a future
+     * that will be completed with the responses of all the subscribers to
+     * the topic of the request.
+     * <p>
+     * The request is published only once, and all subscribers must publish
+     * their response to the topic given by the {@code replyto} metadata
+     * field, through the same proxy.
+     * The future is completed as soon as the given number of responses is
+     * received, or when the timeout expires, with the responses received so
+     * far, in arrival order (which may be fewer than expected, or none).
+     * To collect every response received before the deadline, use
+     * {@link Integer#MAX_VALUE} as the number of responses.
+     * Late responses are discarded.
+     *
+     * @param msg the message to be published
+     * @param responses the number of responses to wait before completing
+     * @param timeout the length of time to wait the responses, in milliseconds
+     * @return the future responses
+     * @throws xMsgException if the message could not be published
+     */
+    public CompletableFuture<List<xMsgMessage>> scatterGather(xMsgMessage msg,
+                                                              int responses,
+                                                              long timeout)
+            throws xMsgException {
+        return scatterGather(setup.proxyAddress(), msg, responses, timeout);
+    }
+
+    /**
+     * Publishes a request through the specified proxy and returns a future
+     * that will be completed with the responses of all the subscribers to
+     * the topic of the request.
+     *
+     * @param address the address to the proxy
+     * @param msg the message to be published
+     * @param responses the number of responses to wait before completing
+     * @param timeout the length of time to wait the responses, in milliseconds
+     * @return the future responses
+     * @throws xMsgException if the message could not be published
+     * @see #scatterGather(xMsgMessage, int, long)
+     */
+    public CompletableFuture<List<xMsgMessage>> scatterGather(xMsgProxyAddress address,
+                                                              xMsgMessage msg,
+                                                              int responses,
+                                                              long timeout)
+            throws xMsgException {
+        return scatterGather(address, Collections.singletonList(msg.getTopic()),
+                             msg, responses, timeout);
+    }
+
+    /**
+     * Publishes the same request to every given topic through the specified
+     * proxy and returns a future that will be completed with the responses.
+     * <p>
+     * All the requests share the same {@code replyto} topic, so the
+     * responses are collected together, as in
+     * {@link #scatterGather(xMsgMessage, int, long) scatterGather}.
+     * The topic of the given message is ignored.
+     * To wait for a response of every topic, use the number of topics as the
+     * number of responses.
+     *
+     * @param address the address to the proxy
+     * @param topics the topics where the request will be published
+     * @param msg the message to be published
+     * @param responses the number of responses to wait before completing
+     * @param timeout the length of time to wait the responses, in milliseconds
+     * @return the future responses
+     * @throws xMsgException if the messages could not be published
+     */
+    public CompletableFuture<List<xMsgMessage>> scatterGather(xMsgProxyAddress address,
+                                                              Collection<xMsgTopic> topics,
+                                                              xMsgMessage msg,
+                                                              int responses,
+                                                              long timeout)
+            throws xMsgException {
+        if (responses <= 0) {
+            throw new IllegalArgumentException("invalid number of responses: " + responses);
+        }
+        String returnAddress = syncPubListener.newReplyTopic();
+        msg.getMetaData().setReplyTo(returnAddress);
+        try {
+            CompletableFuture<List<xMsgMessage>> result =
+                    syncPubListener.expectResponses(returnAddress, responses, timeout);
+            try (xMsgConnection connection = getConnection(address)) {
+                syncPubListener.register(address);
+                for (xMsgTopic topic : topics) {
+                    xMsgMessage request = topic.equals(msg.getTopic())
+                            ? msg
+                            : copyWithTopic(msg, topic);
+                    connection.publish(setup.compression().compress(request));
+                }
+            } catch (xMsgException | RuntimeException e) {
+                result.cancel(false);
+                throw e;
+            }
+            return result;
+        } finally {
+            msg.getMetaData().clearReplyTo();
+        }
+    }
+
+    // every request gets its own metadata, but the data is shared
+    private static xMsgMessage copyWithTopic(xMsgMessage msg, xMsgTopic topic) {
+        xMsgMeta.Builder metaData = msg.getMetaData().clone();
+        if (msg.hasDataBuffer()) {
+            return new xMsgMessage(topic, metaData, msg.getDataBuffer());
+        }
+        return new xMsgMessage(topic, metaData, msg.getData());
+    }
+
     /**
      * Subscribes to a topic of interest through the default proxy.
      * A background thread will be started to receive the messages.
@@ -532,6 +1169,128 @@ public class xMsg implements AutoCloseable {
     public xMsgSubscription subscribe(xMsgProxyAddress address,
                                       Set<xMsgTopic> topics,
                                       xMsgCallBack callback) throws xMsgException {
+        return startSubscription(address, topics, (name, connection) ->
+                createSubscription(name, connection, topics, callback));
+    }
+
+    /**
+     * Subscribes to a topic of interest through the default proxy,
+     * processing the received messages in groups.
+     * A background thread will be started to receive the messages.
+     *
+     * @param topic the topic to select messages
+     * @param callback the user action to run when messages are received
+     * @param maxMessages the maximum number of messages passed to the callback
+     * @param maxDelay the maximum time to wait for more messages,
+     *                 in microseconds
+     * @throws xMsgException if the subscription could not be created
+     * @return the subscription handler
+     * @see #subscribe(xMsgProxyAddress, Set, xMsgBatchCallBack, int, long)
+     */
+    public xMsgSubscription subscribe(xMsgTopic topic,
+                                      xMsgBatchCallBack callback,
+                                      int maxMessages,
+                                      long maxDelay) throws xMsgException {
+        return subscribe(setup.proxyAddress(), new HashSet<>(Arrays.asList(topic)),
+                         callback, maxMessages, maxDelay);
+    }
+
+    /**
+     * Subscribes to a set of topics of interest through the specified proxy,
+     * processing the received messages in groups.
+     * A background thread will be started to receive the messages.
+     * <p>
+     * When a message is received, the subscription keeps receiving the
+     * messages that are already available, or that arrive before the given
+     * delay expires, until the maximum number of messages is reached.
+     * Then the callback is called with all the messages,
+     * in the order they were received.
+     * Messages published in a batch are always delivered together,
+     * so the group may be larger than the maximum in that case.
+     * <p>
+     * In keyed callback mode, the group is split by lane, and every lane
+     * receives a list with the messages selected for it.
+     *
+     * @param address the address to the proxy
+     * @param topics the topics to select messages
+     * @param callback the user action to run when messages are received
+     * @param maxMessages the maximum number of messages passed to the callback
+     * @param maxDelay the maximum time to wait for more messages,
+     *                 in microseconds
+     * @throws xMsgException if the subscription could not be created
+     * @return the subscription handler
+     */
+    public xMsgSubscription subscribe(xMsgProxyAddress address,
+                                      Set<xMsgTopic> topics,
+                                      xMsgBatchCallBack callback,
+                                      int maxMessages,
+                                      long maxDelay) throws xMsgException {
+        if (maxMessages <= 0) {
+            throw new IllegalArgumentException("invalid number of messages: " + maxMessages);
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("invalid delay: " + maxDelay);
+        }
+        return startSubscription(address, topics, (name, connection) ->
+                createSubscription(name, connection, topics, callback, maxMessages, maxDelay));
+    }
+
+    /**
+     * Subscribes to a topic of interest through the default proxy,
+     * keeping the received messages in a queue until they are taken.
+     * When the queue is full the subscription stops receiving messages.
+     *
+     * @param topic the topic to select messages
+     * @param capacity the maximum number of messages in the queue
+     * @throws xMsgException if the subscription could not be created
+     * @return the subscription handler, to take the received messages
+     * @see #subscribePull(xMsgProxyAddress, Set, int, xMsgCallbackPolicy)
+     */
+    public xMsgPullSubscription subscribePull(xMsgTopic topic,
+                                              int capacity) throws xMsgException {
+        return subscribePull(setup.proxyAddress(), new HashSet<>(Arrays.asList(topic)),
+                             capacity, xMsgCallbackPolicy.BLOCK);
+    }
+
+    /**
+     * Subscribes to a set of topics of interest through the specified proxy,
+     * keeping the received messages in a queue until they are taken.
+     * A background thread will be started to receive the messages.
+     * <p>
+     * No callback is executed. The user takes the messages from the returned
+     * handler at its own pace, one by one or in groups
+     * (see {@link xMsgPullSubscription}).
+     * When the queue is full, the policy decides what to do with a new
+     * message: block the subscription (so messages are queued by the
+     * socket, up to its receive high-water mark), or drop a message.
+     * {@link xMsgCallbackPolicy#CALLER_RUNS} is not supported.
+     *
+     * @param address the address to the proxy
+     * @param topics the topics to select messages
+     * @param capacity the maximum number of messages in the queue
+     * @param policy what to do with new messages when the queue is full
+     * @throws xMsgException if the subscription could not be created
+     * @return the subscription handler, to take the received messages
+     */
+    public xMsgPullSubscription subscribePull(xMsgProxyAddress address,
+                                              Set<xMsgTopic> topics,
+                                              int capacity,
+                                              xMsgCallbackPolicy policy) throws xMsgException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        if (policy == xMsgCallbackPolicy.CALLER_RUNS) {
+            throw new IllegalArgumentException("unsupported pull policy: " + policy);
+        }
+        return startSubscription(address, topics, (name, connection) ->
+                new xMsgPullSubscription(name, connection, topics, capacity, policy));
+    }
+
+    private <T extends xMsgSubscription> T startSubscription(
+            xMsgProxyAddress address,
+            Set<xMsgTopic> topics,
+            BiFunction<String, xMsgProxyDriver, T> factory)
+            throws xMsgException {
         // get a connection to the proxy
         xMsgProxyDriver connection = connectionManager.createProxySubscriber(address);
         try {
@@ -539,10 +1298,9 @@ public class xMsg implements AutoCloseable {
             String name = "sub-" + myName + "-" + connection.getAddress() + "-" + topics.hashCode();
 
             // start the subscription, if it does not exist yet
-            xMsgSubscription sHandle = mySubscriptions.get(name);
-            if (sHandle == null) {
-                sHandle = createSubscription(name, connection, topics, callback);
-                sHandle.start(setup.connectionSetup());
+            if (!mySubscriptions.containsKey(name)) {
+                T sHandle = factory.apply(name, connection);
+                sHandle.start(setup, nextSubscriptionLoop());
                 xMsgSubscription result = mySubscriptions.putIfAbsent(name, sHandle);
                 if (result == null) {
                     return sHandle;
@@ -556,6 +1314,16 @@ public class xMsg implements AutoCloseable {
         }
     }
 
+    private SubscriptionLoop nextSubscriptionLoop() {
+        SubscriptionLoop next = null;
+        for (SubscriptionLoop loop : subscriptionLoops) {
+            if (next == null || loop.size() < next.size()) {
+                next = loop;
+            }
+        }
+        return next;
+    }
+
     private xMsgSubscription createSubscription(String name,
                                                 xMsgProxyDriver connection,
                                                 Set<xMsgTopic> topics,
@@ -565,7 +1333,25 @@ public class xMsg implements AutoCloseable {
                 return new xMsgSubscription(name, connection, topics) {
                     @Override
                     public void handle(xMsgMessage inputMsg) throws xMsgException {
-                        threadPool.submit(() -> callback.callback(inputMsg));
+                        callbackQueue.execute(() -> runCallback(callback, inputMsg));
+                    }
+                };
+
+            case RING:
+                return new xMsgSubscription(name, connection, topics) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        ringDispatcher.execute(callback, inputMsg);
+                    }
+                };
+
+            case KEYED:
+                Function<? super xMsgMessage, ?> callbackKey = setup.callbackKey();
+                return new xMsgSubscription(name, connection, topics) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        keyedPool.execute(callbackKey.apply(inputMsg),
+                                          () -> runCallback(callback, inputMsg));
                     }
                 };
 
@@ -582,6 +1368,93 @@ public class xMsg implements AutoCloseable {
         }
     }
 
+    private xMsgSubscription createSubscription(String name,
+                                                xMsgProxyDriver connection,
+                                                Set<xMsgTopic> topics,
+                                                xMsgBatchCallBack callback,
+                                                int maxMessages,
+                                                long maxDelay) {
+        switch (callbackMode) {
+            case MULTI_THREAD:
+                return new xMsgSubscription(name, connection, topics, maxMessages, maxDelay) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        handle(Collections.singletonList(inputMsg));
+                    }
+
+                    @Override
+                    public void handle(List<xMsgMessage> inputMsgs) throws xMsgException {
+                        callbackQueue.execute(() -> runCallback(callback, inputMsgs));
+                    }
+                };
+
+            case RING:
+                return new xMsgSubscription(name, connection, topics, maxMessages, maxDelay) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        handle(Collections.singletonList(inputMsg));
+                    }
+
+                    @Override
+                    public void handle(List<xMsgMessage> inputMsgs) throws xMsgException {
+                        ringDispatcher.execute(callback, inputMsgs);
+                    }
+                };
+
+            case KEYED:
+                Function<? super xMsgMessage, ?> callbackKey = setup.callbackKey();
+                return new xMsgSubscription(name, connection, topics, maxMessages, maxDelay) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        handle(Collections.singletonList(inputMsg));
+                    }
+
+                    @Override
+                    public void handle(List<xMsgMessage> inputMsgs) throws xMsgException {
+                        Map<Integer, List<xMsgMessage>> lanes = new LinkedHashMap<>();
+                        for (xMsgMessage msg : inputMsgs) {
+                            int lane = keyedPool.lane(callbackKey.apply(msg));
+                            lanes.computeIfAbsent(lane, k -> new ArrayList<>()).add(msg);
+                        }
+                        lanes.forEach((lane, msgs) ->
+                                keyedPool.executeInLane(lane, () -> runCallback(callback, msgs)));
+                    }
+                };
+
+            case SINGLE_THREAD:
+                return new xMsgSubscription(name, connection, topics, maxMessages, maxDelay) {
+                    @Override
+                    public void handle(xMsgMessage inputMsg) throws xMsgException {
+                        handle(Collections.singletonList(inputMsg));
+                    }
+
+                    @Override
+                    public void handle(List<xMsgMessage> inputMsgs) throws xMsgException {
+                        callback.callback(inputMsgs);
+                    }
+                };
+
+            default:
+                throw new IllegalArgumentException("invalid callback mode: " + callbackMode);
+        }
+    }
+
+    static void runCallback(xMsgCallBack callback, xMsgMessage msg) {
+        try {
+            callback.callback(msg);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    static void runCallback(xMsgBatchCallBack callback, List<xMsgMessage> msgs) {
+        try {
+            callback.callback(msgs);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Stops the given subscription. This will not cancel the callbacks of the
      * subscription that are still pending or running in the internal
@@ -594,6 +1467,66 @@ public class xMsg implements AutoCloseable {
         mySubscriptions.remove(handle.getName());
     }
 
+    /**
+     * Starts a direct request/reply endpoint on the given local port.
+     * A background thread will be started to receive the requests.
+     * <p>
+     * Requesters can send requests directly to the {@link xMsgResponder#getAddress
+     * address} of the responder with
+     * {@link #syncPublish(xMsgDirectAddress, xMsgMessage, long) syncPublish} or
+     * {@link #asyncPublish(xMsgDirectAddress, xMsgMessage, long) asyncPublish},
+     * without going through a proxy. The address can be advertised with
+     * {@link #register(xMsgRegInfo)} and
+     * {@link xMsgRegInfo#responder(xMsgTopic, xMsgDirectAddress, String)}.
+     * <p>
+     * The callback runs in the callback threads of this actor,
+     * as the callbacks of the subscriptions (or in the responder thread,
+     * when using the {@link xMsgCallbackMode#SINGLE_THREAD single-thread} mode),
+     * and its returned message is sent back to the requester.
+     *
+     * @param port the port where the endpoint will listen for requests
+     * @param callback the user action to create the response to a request
+     * @return the responder handler
+     * @throws xMsgException if the endpoint could not be created
+     */
+    public xMsgResponder startResponder(int port, xMsgReplyCallBack callback)
+            throws xMsgException {
+        String name = "rep-" + myName + "-" + port;
+        xMsgResponder responder = new xMsgResponder(name, getSocketFactory(), port, callback,
+                                                    responderDispatcher(),
+                                                    setup.compression(),
+                                                    setup.drainLimit());
+        if (myResponders.putIfAbsent(name, responder) != null) {
+            responder.stop();
+            throw new IllegalStateException("responder already exists");
+        }
+        responder.start();
+        return responder;
+    }
+
+    private BiConsumer<xMsgCallBack, xMsgMessage> responderDispatcher() {
+        switch (callbackMode) {
+            case SINGLE_THREAD:
+                return xMsg::runCallback;
+            case RING:
+                // the ring workers occupy the whole thread-pool
+                return ringDispatcher::execute;
+            default:
+                return (callback, msg) -> callbackQueue.execute(() -> runCallback(callback, msg));
+        }
+    }
+
+    /**
+     * Stops the given responder. Requests that are still being processed by
+     * the callbacks will not be answered.
+     *
+     * @param handle an active responder
+     */
+    public void stopResponder(xMsgResponder handle) {
+        handle.stop();
+        myResponders.remove(handle.getName());
+    }
+
     /**
      * Stops all subscriptions. This will not stop the callbacks that are still
      * pending or running in the internal threadpool.
@@ -624,20 +1557,40 @@ public class xMsg implements AutoCloseable {
      * Otherwise just use {@link #close()}.
      */
     protected final void terminateCallbacks() {
-        threadPool.shutdown();
+        if (ringDispatcher != null) {
+            ringDispatcher.stop();
+        }
+        List<ExecutorService> pools = new ArrayList<>();
+        pools.add(threadPool);
+        if (keyedPool != null) {
+            pools.addAll(keyedPool.lanes());
+        }
+        pools.forEach(ExecutorService::shutdown);
         try {
-            if (!threadPool.awaitTermination(30, TimeUnit.SECONDS)) {
-                threadPool.shutdownNow();
-                if (!threadPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            if (!awaitTermination(pools, 30)) {
+                pools.forEach(ExecutorService::shutdownNow);
+                if (!awaitTermination(pools, 30)) {
                     System.err.println("callback pool did not terminate");
                 }
             }
         } catch (InterruptedException ie) {
-            threadPool.shutdownNow();
+            pools.forEach(ExecutorService::shutdownNow);
             Thread.currentThread().interrupt();
         }
     }
 
+    private static boolean awaitTermination(List<ExecutorService> pools, long timeout)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        for (ExecutorService pool : pools) {
+            long remaining = deadline - System.nanoTime();
+            if (!pool.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Registers this actor on the <i>default</i> registrar service.
      * The actor will be registered as communicating through messages
@@ -687,6 +1640,10 @@ public class xMsg implements AutoCloseable {
         try {
             xMsgRegistration.Builder reg = createRegistration(info);
             reg.setDescription(info.description());
+            if (info.directAddress() != null) {
+                reg.setDirectHost(info.directAddress().host());
+                reg.setDirectPort(info.directAddress().port());
+            }
             regDriver.addRegistration(myName, reg.build(), timeout);
             connectionManager.releaseRegistrarConnection(regDriver);
         } catch (ZMQException | xMsgException e) {
@@ -865,20 +1822,100 @@ public class xMsg implements AutoCloseable {
      * @return the pool size to run callbacks
      */
     public int getPoolSize() {
-        return threadPool.getMaximumPoolSize();
+        return setup.poolSize();
     }
 
-    private xMsgRegistration.Builder createRegistration(xMsgRegInfo info) {
-        return xMsgRegFactory.newRegistration(myName, setup.proxyAddress(),
-                                              info.type(), info.topic());
+    /**
+     * Returns the number of messages dropped by the publisher connections of
+     * this actor, because they reached their high-water mark.
+     *
+     * @return the total number of dropped messages
+     * @see xMsgSetup.Builder#withOverflowPolicy(xMsgOverflowPolicy)
+     */
+    public long getDroppedMessages() {
+        return connectionManager.droppedMessages();
     }
 
+    /**
+     * Returns the number of received messages waiting for their callback
+     * to be executed.
+     *
+     * @return the current size of the callback queue
+     * @see xMsgSetup.Builder#withCallbackQueue(int, xMsgCallbackPolicy)
+     */
+    public int getPendingCallbacks() {
+        int pending = callbackQueues().mapToInt(CallbackQueue::size).sum();
+        if (ringDispatcher != null) {
+            pending += ringDispatcher.size();
+        }
+        return pending;
+    }
 
-    private final class RejectedCallbackHandler implements RejectedExecutionHandler {
+    /**
+     * Returns the number of received messages that were dropped because the
+     * callback queue was full.
+     *
+     * @return the total number of dropped callbacks
+     * @see xMsgCallbackPolicy#DROP_NEWEST
+     * @see xMsgCallbackPolicy#DROP_OLDEST
+     */
+    public long getDroppedCallbacks() {
+        long dropped = callbackQueues().mapToLong(CallbackQueue::dropped).sum();
+        if (ringDispatcher != null) {
+            dropped += ringDispatcher.dropped();
+        }
+        return dropped;
+    }
 
-        @Override
-        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-            System.err.println("Rejected callback execution for subscribed message.");
+    /**
+     * Returns the number of callbacks that were executed by the subscription
+     * thread because the callback queue was full.
+     *
+     * @return the total number of callbacks run by the subscriptions
+     * @see xMsgCallbackPolicy#CALLER_RUNS
+     */
+    public long getCallerRunsCallbacks() {
+        long callerRuns = callbackQueues().mapToLong(CallbackQueue::callerRuns).sum();
+        if (ringDispatcher != null) {
+            callerRuns += ringDispatcher.callerRuns();
         }
+        return callerRuns;
+    }
+
+    /**
+     * Returns the number of received messages that were not processed
+     * because the callbacks were already terminated.
+     *
+     * @return the total number of rejected callbacks
+     */
+    public long getRejectedCallbacks() {
+        long rejected = callbackQueues().mapToLong(CallbackQueue::rejected).sum();
+        if (ringDispatcher != null) {
+            rejected += ringDispatcher.rejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * Returns the number of responses that were received after their
+     * sync-publish, async-publish or scatter-gather request had already
+     * timed out or had been completed. Late responses are discarded.
+     *
+     * @return the total number of late responses
+     */
+    public long getLateResponses() {
+        return syncPubListener.lateResponses();
+    }
+
+    private Stream<CallbackQueue> callbackQueues() {
+        if (keyedPool == null) {
+            return Stream.of(callbackQueue);
+        }
+        return Stream.concat(Stream.of(callbackQueue), keyedPool.queues().stream());
+    }
+
+    private xMsgRegistration.Builder createRegistration(xMsgRegInfo info) {
+        return xMsgRegFactory.newRegistration(myName, setup.proxyAddress(),
+                                              info.type(), info.topic());
     }
 }
@@ -0,0 +1,96 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Creates the executor that runs the callbacks of the subscriptions of an
+ * actor, when the {@link xMsgCallbackMode#MULTI_THREAD multi-thread}
+ * callback mode is used.
+ * <p>
+ * The default executor is a fixed thread-pool, with the size given by
+ * {@link xMsgSetup#poolSize()}. Callbacks that block (i.e. waiting for a
+ * response or doing I/O) may occupy all the threads of a small pool, so other
+ * executors are provided for that case:
+ * <ul>
+ * <li>{@link #forkJoinPool()} uses a work-stealing pool that can add
+ *     compensation threads when a callback blocks in a
+ *     {@link java.util.concurrent.ForkJoinPool.ManagedBlocker managed} way,
+ * <li>{@link #virtualThreads()} starts a new virtual thread for every
+ *     message, so thousands of callbacks can block concurrently.
+ * </ul>
+ * Custom executors can also be used. The actor will shut down the executor
+ * when it is destroyed.
+ *
+ * @see xMsgSetup.Builder#withCallbackExecutor(xMsgCallbackExecutor)
+ */
+@FunctionalInterface
+public interface xMsgCallbackExecutor {
+
+    /**
+     * Creates a new executor for the callbacks of an actor.
+     *
+     * @param name the name of the actor, to be used as prefix of the threads
+     * @param poolSize the configured size of the callback thread-pool
+     * @return a new executor to run callbacks
+     */
+    ExecutorService newExecutor(String name, int poolSize);
+
+    /**
+     * Runs the callbacks in a fixed-size thread-pool with an unbounded queue.
+     *
+     * @return the default callback executor
+     */
+    static xMsgCallbackExecutor fixedThreadPool() {
+        return (name, poolSize) -> ThreadUtils.newThreadPool(poolSize, name,
+                                                             new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * Runs the callbacks in a work-stealing {@code ForkJoinPool},
+     * with the pool size as the target parallelism.
+     * Callbacks are executed in FIFO order.
+     *
+     * @return a callback executor that uses a fork-join pool
+     */
+    static xMsgCallbackExecutor forkJoinPool() {
+        return (name, poolSize) -> ThreadUtils.newForkJoinPool(poolSize, name);
+    }
+
+    /**
+     * Runs every callback in its own virtual thread.
+     * The pool size is ignored.
+     * <p>
+     * Virtual threads require Java 21 or newer.
+     * The executor will fail to be created when running on an older JVM.
+     *
+     * @return a callback executor that uses virtual threads
+     */
+    static xMsgCallbackExecutor virtualThreads() {
+        return (name, poolSize) -> ThreadUtils.newVirtualThreadExecutor(name);
+    }
+}
@@ -30,6 +30,30 @@ public enum xMsgCallbackMode {
     /** The callbacks will run in a single thread. */
     SINGLE_THREAD,
 
-    /** The callbacks will run in a thread pool. */
-    MULTI_THREAD
+    /** The callbacks will run in the callback executor (a thread pool by default). */
+    MULTI_THREAD,
+
+    /**
+     * The callbacks will run in a fixed number of single-threaded lanes
+     * (as many as the size of the callback thread-pool).
+     * The lane is selected by the hash of a key extracted from every message
+     * (the topic by default), so messages with the same key are processed in
+     * the same order they were received, while messages with different keys
+     * can be processed in parallel.
+     *
+     * @see xMsgSetup.Builder#withCallbackKey
+     */
+    KEYED,
+
+    /**
+     * The callbacks will run in a fixed number of workers
+     * (as many as the size of the callback thread-pool),
+     * that take the received messages from a preallocated ring buffer.
+     * The size of the ring and the overflow policy are set with the callback
+     * queue options.
+     *
+     * @see xMsgSetup.Builder#withCallbackQueue
+     * @see xMsgSetup.Builder#withRingConsumers
+     */
+    RING
 }
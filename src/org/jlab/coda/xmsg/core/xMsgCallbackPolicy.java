@@ -0,0 +1,50 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+/**
+ * Specifies what to do with a received message when the queue of pending
+ * callbacks of the actor is full.
+ *
+ * @see xMsgSetup.Builder#withCallbackQueue(int, xMsgCallbackPolicy)
+ */
+public enum xMsgCallbackPolicy {
+    /**
+     * The subscription stops receiving until there is space in the queue.
+     * New messages will be queued by 0MQ, until the receive high-water mark
+     * is reached and the proxy starts dropping them.
+     */
+    BLOCK,
+
+    /** The received message is dropped. */
+    DROP_NEWEST,
+
+    /** The oldest pending callback is dropped to make space for the new one. */
+    DROP_OLDEST,
+
+    /**
+     * The callback runs in the subscription thread,
+     * which stops receiving new messages until the callback returns.
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,66 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+
+/**
+ * Compresses and decompresses the data of messages.
+ * <p>
+ * The name of the codec is recorded in the metadata of the compressed
+ * messages, so subscribers can find the same codec to decompress the data.
+ * Codecs must be registered in {@link xMsgCodecs} by both the publishers and
+ * the subscribers. Extra codecs can be provided as services in the
+ * {@code META-INF/services/org.jlab.coda.xmsg.core.xMsgCodec} file of a JAR,
+ * and they will be registered automatically.
+ * <p>
+ * Codecs must be thread-safe, since they are shared by all actors.
+ *
+ * @see xMsgCompression
+ */
+public interface xMsgCodec {
+
+    /**
+     * Returns the unique name of this codec.
+     *
+     * @return the name stored into the metadata of compressed messages
+     */
+    String name();
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data the uncompressed data
+     * @return a new array with the compressed data
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * Decompresses the given data.
+     *
+     * @param data the compressed data
+     * @return a new array with the uncompressed data
+     * @throws xMsgException if the data could not be decompressed
+     */
+    byte[] decompress(byte[] data) throws xMsgException;
+}
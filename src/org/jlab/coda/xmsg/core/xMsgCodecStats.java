@@ -0,0 +1,124 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work done by a registered {@link xMsgCodec codec}.
+ * The counters are updated every time a message is compressed or decompressed
+ * with the codec.
+ *
+ * @see xMsgCodecs#getStats
+ */
+public final class xMsgCodecStats {
+
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionTime = new LongAdder();
+
+    private final LongAdder decompressedMessages = new LongAdder();
+    private final LongAdder decompressionTime = new LongAdder();
+
+    xMsgCodecStats() { }
+
+    void compressed(int inputSize, int outputSize, long time) {
+        compressedMessages.increment();
+        uncompressedBytes.add(inputSize);
+        compressedBytes.add(outputSize);
+        compressionTime.add(time);
+    }
+
+    void decompressed(long time) {
+        decompressedMessages.increment();
+        decompressionTime.add(time);
+    }
+
+    /**
+     * Returns the number of compressed messages.
+     *
+     * @return how many messages were compressed with the codec
+     */
+    public long getCompressedMessages() {
+        return compressedMessages.sum();
+    }
+
+    /**
+     * Returns the total size of the data before compression.
+     *
+     * @return the number of bytes passed to the codec
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Returns the total size of the data after compression.
+     *
+     * @return the number of bytes returned by the codec
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Returns the ratio between the uncompressed and compressed sizes.
+     *
+     * @return the compression ratio, or zero if no message was compressed
+     */
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        if (compressed == 0) {
+            return 0;
+        }
+        return (double) uncompressedBytes.sum() / compressed;
+    }
+
+    /**
+     * Returns the total time spent compressing data.
+     *
+     * @return the compression time, in nanoseconds
+     */
+    public long getCompressionTime() {
+        return compressionTime.sum();
+    }
+
+    /**
+     * Returns the number of decompressed messages.
+     *
+     * @return how many messages were decompressed with the codec
+     */
+    public long getDecompressedMessages() {
+        return decompressedMessages.sum();
+    }
+
+    /**
+     * Returns the total time spent decompressing data.
+     *
+     * @return the decompression time, in nanoseconds
+     */
+    public long getDecompressionTime() {
+        return decompressionTime.sum();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of compression codecs.
+ * <p>
+ * The {@link #DEFLATE deflate} codec is always available.
+ * Codecs declared as {@link ServiceLoader services} are registered
+ * the first time this class is used.
+ * Other codecs can be registered with {@link #register}.
+ * <p>
+ * Every codec has its own {@link xMsgCodecStats statistics},
+ * shared by all actors running in the same JVM.
+ */
+public final class xMsgCodecs {
+
+    /**
+     * The name of the built-in codec.
+     */
+    public static final String DEFLATE = "deflate";
+
+    private static final ConcurrentMap<String, xMsgCodec> codecs; // nocheck: ConstantName
+    private static final ConcurrentMap<String, xMsgCodecStats> stats; // nocheck: ConstantName
+
+    static {
+        codecs = new ConcurrentHashMap<>();
+        stats = new ConcurrentHashMap<>();
+        register(new DeflateCodec());
+        for (xMsgCodec codec : ServiceLoader.load(xMsgCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private xMsgCodecs() { }
+
+    /**
+     * Registers a new codec.
+     * Any codec already registered with the same name will be replaced.
+     *
+     * @param codec the codec to be registered
+     */
+    public static void register(xMsgCodec codec) {
+        Objects.requireNonNull(codec, "null codec");
+        String name = Objects.requireNonNull(codec.name(), "null codec name");
+        stats.putIfAbsent(name, new xMsgCodecStats());
+        codecs.put(name, codec);
+    }
+
+    /**
+     * Gets the codec registered with the given name.
+     *
+     * @param name the name of the codec
+     * @return the registered codec
+     * @throws IllegalArgumentException if there is no codec with that name
+     */
+    public static xMsgCodec get(String name) {
+        xMsgCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("unknown codec: " + name);
+        }
+        return codec;
+    }
+
+    /**
+     * Gets the statistics of the codec registered with the given name.
+     *
+     * @param name the name of the codec
+     * @return the statistics of the codec
+     * @throws IllegalArgumentException if there is no codec with that name
+     */
+    public static xMsgCodecStats getStats(String name) {
+        xMsgCodecStats codecStats = stats.get(name);
+        if (codecStats == null) {
+            throw new IllegalArgumentException("unknown codec: " + name);
+        }
+        return codecStats;
+    }
+
+    static byte[] compress(xMsgCodec codec, byte[] data) {
+        long start = System.nanoTime();
+        byte[] output = codec.compress(data);
+        long time = System.nanoTime() - start;
+        stats.get(codec.name()).compressed(data.length, output.length, time);
+        return output;
+    }
+
+    static byte[] decompress(String name, byte[] data) throws xMsgException {
+        xMsgCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new xMsgException("unknown codec: " + name);
+        }
+        long start = System.nanoTime();
+        byte[] output = codec.decompress(data);
+        long time = System.nanoTime() - start;
+        stats.get(name).decompressed(time);
+        return output;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decides which published messages must be compressed, and with which codec.
+ * <p>
+ * A default codec can be used for all topics, and specific codecs can be set
+ * (or compression disabled) for all topics that have a given parent.
+ * When many parents match a topic, the longest one is used.
+ * Only messages with data larger than the threshold are compressed,
+ * and the compressed data is sent only if it is smaller than the original.
+ * Messages backed by a byte buffer are never compressed, so they are still
+ * published without copying the buffer into the heap.
+ * <p>
+ * Compressed messages record the codec in the {@code compression} metadata
+ * field. Subscribers decompress the data when it is first accessed,
+ * if the codec is registered in {@link xMsgCodecs}.
+ *
+ * @see xMsgSetup.Builder#withCompression
+ */
+public final class xMsgCompression {
+
+    /**
+     * The default minimum data size to compress a message, in bytes.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * Creates a new compression policy builder.
+     *
+     * @return the builder
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+
+    /**
+     * Helps creating a compression policy.
+     * By default no message is compressed.
+     */
+    public static final class Builder {
+
+        private xMsgCodec defaultCodec = null;
+        private int threshold = DEFAULT_THRESHOLD;
+        private final Map<xMsgTopic, xMsgCodec> topicCodecs = new LinkedHashMap<>();
+
+        private Builder() { }
+
+        /**
+         * Sets the codec to compress messages of all topics.
+         *
+         * @param codec the name of a registered codec
+         * @return this builder
+         */
+        public Builder withCodec(String codec) {
+            this.defaultCodec = xMsgCodecs.get(codec);
+            return this;
+        }
+
+        /**
+         * Sets the codec to compress messages whose topic has the given
+         * parent.
+         *
+         * @param topic the parent topic
+         * @param codec the name of a registered codec
+         * @return this builder
+         */
+        public Builder withCodec(xMsgTopic topic, String codec) {
+            Objects.requireNonNull(topic, "null topic");
+            this.topicCodecs.put(topic, xMsgCodecs.get(codec));
+            return this;
+        }
+
+        /**
+         * Disables compression of messages whose topic has the given parent.
+         *
+         * @param topic the parent topic
+         * @return this builder
+         */
+        public Builder withoutCompression(xMsgTopic topic) {
+            Objects.requireNonNull(topic, "null topic");
+            this.topicCodecs.put(topic, null);
+            return this;
+        }
+
+        /**
+         * Sets the minimum data size of the compressed messages.
+         *
+         * @param threshold the minimum size, in bytes
+         * @return this builder
+         */
+        public Builder withThreshold(int threshold) {
+            if (threshold < 0) {
+                throw new IllegalArgumentException("invalid threshold: " + threshold);
+            }
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Creates the compression policy.
+         *
+         * @return the compression policy
+         */
+        public xMsgCompression build() {
+            return new xMsgCompression(defaultCodec, threshold, topicCodecs);
+        }
+    }
+
+
+    private final xMsgCodec defaultCodec;
+    private final int threshold;
+    private final Map<xMsgTopic, xMsgCodec> topicCodecs;
+
+    private xMsgCompression(xMsgCodec defaultCodec,
+                            int threshold,
+                            Map<xMsgTopic, xMsgCodec> topicCodecs) {
+        this.defaultCodec = defaultCodec;
+        this.threshold = threshold;
+        this.topicCodecs = new LinkedHashMap<>(topicCodecs);
+    }
+
+    /**
+     * Gets the codec used to compress messages of the given topic.
+     *
+     * @param topic the topic of the message
+     * @return the codec for the topic, or null if messages of the topic are
+     *         not compressed
+     */
+    public xMsgCodec getCodec(xMsgTopic topic) {
+        xMsgCodec codec = defaultCodec;
+        int length = -1;
+        for (Map.Entry<xMsgTopic, xMsgCodec> entry : topicCodecs.entrySet()) {
+            xMsgTopic parent = entry.getKey();
+            if (parent.isParent(topic) && parent.toString().length() > length) {
+                codec = entry.getValue();
+                length = parent.toString().length();
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Gets the minimum data size of the compressed messages.
+     *
+     * @return the threshold in bytes
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Compresses the data of the message, if required by the policy.
+     * The given message is never modified.
+     *
+     * @param msg the message to be published
+     * @return a new compressed message,
+     *         or the same message if it should not be compressed
+     */
+    xMsgMessage compress(xMsgMessage msg) {
+        if (defaultCodec == null && topicCodecs.isEmpty()) {
+            return msg;
+        }
+        if (msg.hasDataBuffer() || msg.getMetaData().hasCompression()) {
+            return msg;
+        }
+        int size = msg.getDataSize();
+        if (size < threshold) {
+            return msg;
+        }
+        xMsgCodec codec = getCodec(msg.getTopic());
+        if (codec == null) {
+            return msg;
+        }
+        byte[] data = xMsgCodecs.compress(codec, msg.getData());
+        if (data.length >= size) {
+            return msg;
+        }
+        xMsgMeta.Builder metaData = msg.getMetaData().clone().setCompression(codec.name());
+        return new xMsgMessage(msg.getTopic(), metaData, data);
+    }
+}
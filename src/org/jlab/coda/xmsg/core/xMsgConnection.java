@@ -28,6 +28,8 @@ import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
 import org.zeromq.ZMQException;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 
 /**
  * The standard connection to xMsg nodes.
@@ -77,7 +79,56 @@ public class xMsgConnection implements Closeable {
             throw new IllegalStateException("connection is closed");
         }
         try {
-            connection.send(msg.serialize());
+            if (!msg.send(connection)) {
+                pool.messageDropped();
+            }
+        } catch (ZMQException e) {
+            destroy();
+            throw new xMsgException("could not publish message", e);
+        }
+    }
+
+    void publishBatch(Collection<xMsgMessage> messages) throws xMsgException {
+        if (connection == null) {
+            throw new IllegalStateException("connection is closed");
+        }
+        int sent = 0;
+        try {
+            for (xMsgMessage msg : messages) {
+                if (!msg.send(connection)) {
+                    pool.messageDropped();
+                }
+                sent++;
+            }
+        } catch (ZMQException e) {
+            destroy();
+            throw new xMsgException("could not publish message " + (sent + 1)
+                                    + " of " + messages.size(), e);
+        }
+    }
+
+    void publish(byte[] topic, byte[] metaData, byte[] data) throws xMsgException {
+        if (connection == null) {
+            throw new IllegalStateException("connection is closed");
+        }
+        try {
+            if (!connection.send(topic, metaData, data)) {
+                pool.messageDropped();
+            }
+        } catch (ZMQException e) {
+            destroy();
+            throw new xMsgException("could not publish message", e);
+        }
+    }
+
+    void publish(byte[] topic, byte[] metaData, ByteBuffer data) throws xMsgException {
+        if (connection == null) {
+            throw new IllegalStateException("connection is closed");
+        }
+        try {
+            if (!connection.send(topic, metaData, data)) {
+                pool.messageDropped();
+            }
         } catch (ZMQException e) {
             destroy();
             throw new xMsgException("could not publish message", e);
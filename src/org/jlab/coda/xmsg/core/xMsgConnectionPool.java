@@ -22,6 +22,7 @@
 
 package org.jlab.coda.xmsg.core;
 
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
 import org.jlab.coda.xmsg.excp.xMsgException;
 import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
 import org.jlab.coda.xmsg.net.xMsgContext;
@@ -171,4 +172,54 @@ public final class xMsgConnectionPool implements Closeable {
     public void destroyConnection(xMsgConnection connection) {
         connection.destroy();
     }
+
+    /**
+     * Creates a publisher for the given topic and metadata,
+     * using a connection to the default proxy.
+     * The topic and metadata will be encoded once and reused by all messages
+     * sent with the publisher.
+     *
+     * @param topic the topic of the published messages
+     * @param metaData the metadata of the published messages
+     * @return a new publisher bound to the given topic and metadata
+     * @throws xMsgException if a new connection could not be created
+     */
+    public xMsgPublisher createPublisher(xMsgTopic topic, xMsgMeta.Builder metaData)
+            throws xMsgException {
+        return createPublisher(setup.proxyAddress(), topic, metaData);
+    }
+
+    /**
+     * Creates a publisher for the given topic and metadata,
+     * using a connection to the specified proxy.
+     * The topic and metadata will be encoded once and reused by all messages
+     * sent with the publisher.
+     *
+     * @param address the address of the proxy
+     * @param topic the topic of the published messages
+     * @param metaData the metadata of the published messages
+     * @return a new publisher bound to the given topic and metadata
+     * @throws xMsgException if a new connection could not be created
+     */
+    public xMsgPublisher createPublisher(xMsgProxyAddress address,
+                                         xMsgTopic topic,
+                                         xMsgMeta.Builder metaData) throws xMsgException {
+        xMsgConnection connection = getConnection(address);
+        try {
+            return new xMsgPublisher(connection, topic, metaData);
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of messages dropped by the connections of this pool,
+     * because they reached their high-water mark.
+     *
+     * @return the total number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return connectionManager.droppedMessages();
+    }
 }
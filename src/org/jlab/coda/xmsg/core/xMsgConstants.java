@@ -44,6 +44,15 @@ public final class xMsgConstants {
     /** The default size for the callback thread pool. */
     public static final int DEFAULT_POOL_SIZE = 2;
 
+    /** The default maximum number of messages received by a subscription at once. */
+    public static final int DEFAULT_DRAIN_LIMIT = 64;
+
+    /** The default number of slots of the callback ring buffer. */
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    /** The default maximum number of callbacks taken at once by a ring worker. */
+    public static final int DEFAULT_RING_BATCH = 64;
+
     /** The default timeout to wait for a connection confirmation. */
     public static final int CONNECTION_TIMEOUT = 1000;
 
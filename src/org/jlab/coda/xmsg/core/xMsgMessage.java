@@ -22,17 +22,22 @@
 
 package org.jlab.coda.xmsg.core;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
 import org.jlab.coda.xmsg.data.xMsgD.xMsgData;
 import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
 import org.jlab.coda.xmsg.data.xMsgMimeType;
 import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
 import org.zeromq.ZFrame;
 import org.zeromq.ZMsg;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -51,16 +56,36 @@ import java.util.List;
  * objects must be serialized before creating the message
  * (i.e. applications using xMsg must take care of the binary data format).
  * <p>
+ * The data can also be provided as a {@link ByteBuffer} (i.e. a direct buffer
+ * or a memory-mapped file). In that case the buffer will be sent over the wire
+ * without copying it into the Java heap.
+ * <p>
  * When a message is sync-published, the <i>metadata</i> will contain an
  * auto-generated {@code replyTopic} where the response can be published to.
+ * <p>
+ * Received messages keep the raw frames read from the wire, and the topic and
+ * metadata are decoded the first time they are accessed. Messages that are
+ * only forwarded or recorded can use the raw accessors
+ * ({@link #getRawTopic()}, {@link #getRawMetaData()}, {@link #getRawData()})
+ * and be published again without decoding them.
+ * Like the metadata builder, received messages are not thread-safe.
  *
  * @version 2.x
  */
 public class xMsgMessage {
 
-    private final xMsgTopic topic;
-    private final xMsgMeta.Builder metaData;
-    private final byte[] data;
+    private xMsgTopic topic;
+    private xMsgMeta.Builder metaData;
+    private byte[] data;
+    private final ByteBuffer dataBuffer;
+
+    // the raw frames of a received message, until they are decoded
+    private byte[] topicFrame;
+    private byte[] metaDataFrame;
+
+    // the last encoded metadata, reused while the builder is not modified
+    private xMsgMeta encodedMetaData;
+    private byte[] encodedMetaDataFrame;
 
     /**
      * Constructs a new message.
@@ -78,9 +103,7 @@ public class xMsgMessage {
      * @param data     serialized data
      */
     public xMsgMessage(xMsgTopic topic, xMsgMeta.Builder metaData, byte[] data) {
-        this.topic = topic;
-        this.metaData = metaData;
-        this.data = data;
+        this(topic, metaData, data, null);
     }
 
     /**
@@ -100,10 +123,60 @@ public class xMsgMessage {
      * @param data     serialized data
      */
     public xMsgMessage(xMsgTopic topic, String mimeType, byte[] data) {
+        this(topic, xMsgMeta.newBuilder().setDataType(mimeType), data, null);
+    }
+
+    /**
+     * Constructs a new message backed by a byte buffer.
+     * The message will be published to the given topic.
+     * The metadata must contain the mime-type describing the data.
+     * <p>
+     * The data of the message are the remaining bytes of the buffer
+     * (between its current position and its limit).
+     * The buffer is not copied, it will be written directly to the socket
+     * when the message is published.
+     * The buffer will be owned by the message, thus, its content, position
+     * and limit cannot be modified by the calling code until the message has
+     * been published.
+     *
+     * @param topic    the topic of the message
+     * @param metaData the metadata of the message
+     * @param data     a buffer with the serialized data
+     */
+    public xMsgMessage(xMsgTopic topic, xMsgMeta.Builder metaData, ByteBuffer data) {
+        this(topic, metaData, null, data);
+    }
+
+    /**
+     * Constructs a new message backed by a byte buffer.
+     * The message will be published to the given topic.
+     * The metadata will only contain the specified {@code mime-type} describing
+     * the data.
+     * <p>
+     * The data of the message are the remaining bytes of the buffer
+     * (between its current position and its limit).
+     * The buffer is not copied, it will be written directly to the socket
+     * when the message is published.
+     * The buffer will be owned by the message, thus, its content, position
+     * and limit cannot be modified by the calling code until the message has
+     * been published.
+     *
+     * @param topic    the topic of the message
+     * @param mimeType the mime-type string for the data
+     * @param data     a buffer with the serialized data
+     */
+    public xMsgMessage(xMsgTopic topic, String mimeType, ByteBuffer data) {
+        this(topic, xMsgMeta.newBuilder().setDataType(mimeType), null, data);
+    }
+
+    private xMsgMessage(xMsgTopic topic,
+                        xMsgMeta.Builder metaData,
+                        byte[] data,
+                        ByteBuffer dataBuffer) {
         this.topic = topic;
-        this.metaData = xMsgMeta.newBuilder();
-        this.metaData.setDataType(mimeType);
+        this.metaData = metaData;
         this.data = data;
+        this.dataBuffer = dataBuffer;
     }
 
     /**
@@ -117,32 +190,188 @@ public class xMsgMessage {
             throw new xMsgException("invalid pub/sub message format");
         }
 
-        ZFrame topicFrame = msg.pop();
-        ZFrame metaDataFrame = msg.pop();
-        ZFrame dataFrame = msg.pop();
+        this.topicFrame = msg.pop().getData();
+        this.metaDataFrame = msg.pop().getData();
+        this.data = msg.pop().getData();
+        this.dataBuffer = null;
+    }
+
+    /**
+     * Creates a message from raw frames, to be decoded on first access.
+     */
+    private xMsgMessage(byte[] topicFrame, byte[] metaDataFrame, byte[] dataFrame) {
+        this.topicFrame = topicFrame;
+        this.metaDataFrame = metaDataFrame;
+        this.data = dataFrame;
+        this.dataBuffer = null;
+    }
+
+    /**
+     * Unpacks the messages coalesced into a single 0MQ message by a batching
+     * publisher.
+     * A batch is composed by the topic frame shared by all messages,
+     * followed by the metadata and data frames of every message.
+     *
+     * @param msg the received 0MQ message
+     * @return the list of messages in the batch
+     */
+    static List<xMsgMessage> unpackBatch(ZMsg msg) throws xMsgException {
+        int size = msg.size();
+        if (size < 5 || size % 2 == 0) {
+            throw new xMsgException("invalid pub/sub batch format");
+        }
+
+        byte[] topicFrame = msg.pop().getData();
+        List<xMsgMessage> messages = new ArrayList<>(size / 2);
+        while (!msg.isEmpty()) {
+            ZFrame metaDataFrame = msg.pop();
+            ZFrame dataFrame = msg.pop();
+            messages.add(new xMsgMessage(topicFrame, metaDataFrame.getData(), dataFrame.getData()));
+        }
+        return messages;
+    }
 
+    /**
+     * Parses the raw metadata of a received message,
+     * and decompresses the data if needed.
+     */
+    private void decodeMetaData() {
         try {
-            this.topic = xMsgTopic.wrap(topicFrame.getData());
-            xMsgMeta metaDataObj = xMsgMeta.parseFrom(metaDataFrame.getData());
-            this.metaData = metaDataObj.toBuilder();
-            this.data = dataFrame.getData();
+            xMsgMeta.Builder builder = xMsgMeta.parseFrom(metaDataFrame).toBuilder();
+            data = decompress(builder, data);
+            metaData = builder;
+            metaDataFrame = null;
         } catch (InvalidProtocolBufferException e) {
-            throw new xMsgException("could not parse metadata", e);
+            throw new IllegalStateException("could not parse metadata", e);
+        } catch (xMsgException e) {
+            throw new IllegalStateException("could not decompress data", e);
+        }
+    }
+
+    /**
+     * Checks if the raw metadata contains the given field, without parsing it.
+     */
+    private static boolean hasRawField(byte[] frame, int field) {
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(frame);
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) == field) {
+                    return true;
+                }
+                input.skipField(tag);
+            }
+            return false;
+        } catch (IOException e) {
+            return true; // let the full parser report the error
+        }
+    }
+
+    /**
+     * Decompresses the received data if the metadata contains a codec,
+     * and removes the codec from the metadata.
+     */
+    private static byte[] decompress(xMsgMeta.Builder metaData, byte[] data)
+            throws xMsgException {
+        if (!metaData.hasCompression()) {
+            return data;
         }
+        String codec = metaData.getCompression();
+        metaData.clearCompression();
+        return xMsgCodecs.decompress(codec, data);
     }
 
     /**
-     * Serializes this message into a 0MQ message,
-     * ready to send it over the wire.
+     * Sends this message over the wire, through the given connection.
+     * The topic and metadata are encoded into new frames,
+     * but the data is sent as it is.
+     * If the message is backed by a byte buffer,
+     * the buffer will be written without copying it into the heap.
      *
-     * @return the 0MQ message
+     * @param connection the connection to the proxy
+     * @return true if the message was queued, false if it was dropped
+     * @throws xMsgException if the message was rejected by the connection
      */
-    ZMsg serialize() {
-        ZMsg msg = new ZMsg();
-        msg.add(topic.toString());
-        msg.add(metaData.build().toByteArray());
-        msg.add(data);
-        return msg;
+    boolean send(xMsgProxyDriver connection) throws xMsgException {
+        return send(connection, encodeTopic(), encodeMetaData());
+    }
+
+    /**
+     * Sends this message over the wire, using the given pre-encoded topic
+     * and metadata frames.
+     *
+     * @param connection the connection to the proxy
+     * @param topicFrame the encoded topic of this message
+     * @param metaDataFrame the encoded metadata of this message
+     * @return true if the message was queued, false if it was dropped
+     * @throws xMsgException if the message was rejected by the connection
+     */
+    boolean send(xMsgProxyDriver connection, byte[] topicFrame, byte[] metaDataFrame)
+            throws xMsgException {
+        if (dataBuffer != null) {
+            return connection.send(topicFrame, metaDataFrame, dataBuffer);
+        }
+        return connection.send(topicFrame, metaDataFrame, data);
+    }
+
+    /**
+     * Sends the metadata and data frames of this message as part of a batch.
+     * The shared topic frame must have been sent before.
+     *
+     * @param connection the connection to the proxy
+     * @param metaDataFrame the encoded metadata of this message
+     * @param last true if this is the last message of the batch
+     */
+    void sendBatchPart(xMsgProxyDriver connection, byte[] metaDataFrame, boolean last) {
+        if (dataBuffer != null) {
+            connection.sendBatchPart(metaDataFrame, dataBuffer, last);
+        } else {
+            connection.sendBatchPart(metaDataFrame, data, last);
+        }
+    }
+
+    /**
+     * Returns the data array matching the frame returned by
+     * {@link #encodeMetaData()}, or null if the message is backed by a
+     * byte buffer. Received data is not decompressed.
+     */
+    byte[] encodeData() {
+        return dataBuffer != null ? null : data;
+    }
+
+    byte[] encodeTopic() {
+        if (topic == null) {
+            return topicFrame;
+        }
+        return topic.toBytes();
+    }
+
+    byte[] encodeMetaData() {
+        if (metaData == null) {
+            return metaDataFrame;
+        }
+        // the builder returns the same object until it is modified
+        xMsgMeta meta = metaData.build();
+        if (meta != encodedMetaData) {
+            encodedMetaDataFrame = meta.toByteArray();
+            encodedMetaData = meta;
+        }
+        return encodedMetaDataFrame;
+    }
+
+    /**
+     * Removes the reply topic from the metadata, if present.
+     * The builder is not touched when there is nothing to clear,
+     * to keep using the same encoded metadata.
+     */
+    void clearReplyTo() {
+        if (metaData == null && !hasRawField(metaDataFrame, xMsgMeta.REPLYTO_FIELD_NUMBER)) {
+            return;
+        }
+        xMsgMeta.Builder meta = getMetaData();
+        if (meta.hasReplyTo()) {
+            meta.clearReplyTo();
+        }
     }
 
     /**
@@ -151,6 +380,9 @@ public class xMsgMessage {
      * @return the topic to which the message is published
      */
     public xMsgTopic getTopic() {
+        if (topic == null) {
+            topic = xMsgTopic.wrap(topicFrame);
+        }
         return topic;
     }
 
@@ -158,18 +390,58 @@ public class xMsgMessage {
      * Returns the metadata of the message.
      *
      * @return a reference to the metadata of the message
+     * @throws IllegalStateException if the received metadata is invalid
      */
     public xMsgMeta.Builder getMetaData() {
+        if (metaData == null) {
+            decodeMetaData();
+        }
         return metaData;
     }
 
+    /**
+     * Returns the serialized topic of the message, as sent over the wire.
+     * For received messages this does not decode the topic.
+     *
+     * @return the encoded topic
+     */
+    public byte[] getRawTopic() {
+        return encodeTopic();
+    }
+
+    /**
+     * Returns the serialized metadata of the message, as sent over the wire.
+     * For received messages this does not parse the metadata
+     * until it is accessed with {@link #getMetaData()}.
+     *
+     * @return the encoded metadata
+     */
+    public byte[] getRawMetaData() {
+        return encodeMetaData();
+    }
+
+    /**
+     * Returns the data of the message, as sent over the wire.
+     * For received messages whose metadata has not been decoded yet,
+     * the data is returned without decompressing it,
+     * matching the compression codec in the raw metadata.
+     *
+     * @return the encoded data
+     */
+    public byte[] getRawData() {
+        if (metaData == null) {
+            return data;
+        }
+        return getData();
+    }
+
     /**
      * Returns the mime-type of the message data.
      *
      * @return a string with the mime-type
      */
     public String getMimeType() {
-        return metaData.getDataType();
+        return getMetaData().getDataType();
     }
 
     /**
@@ -180,7 +452,7 @@ public class xMsgMessage {
      * @return true if the message was sent as a sync-publish request, false otherwise
      */
     public boolean hasReplyTopic() {
-        return metaData.hasReplyTo();
+        return getMetaData().hasReplyTo();
     }
 
     /**
@@ -189,7 +461,7 @@ public class xMsgMessage {
      * @return the topic to publish the response for this message
      */
     public xMsgTopic getReplyTopic() {
-        return xMsgTopic.wrap(metaData.getReplyTo());
+        return xMsgTopic.wrap(getMetaData().getReplyTo());
     }
 
     /**
@@ -198,7 +470,7 @@ public class xMsgMessage {
      * @return true if the data must be used with a certain byte-order
      */
     public boolean hasDataOrder() {
-        return metaData.hasByteOrder();
+        return getMetaData().hasByteOrder();
     }
 
     /**
@@ -209,37 +481,110 @@ public class xMsgMessage {
      * @return the byte-order on which the data must be accessed
      */
     public ByteOrder getDataOrder() {
-        if (!metaData.hasByteOrder()) {
+        xMsgMeta.Builder meta = getMetaData();
+        if (!meta.hasByteOrder()) {
             return ByteOrder.BIG_ENDIAN;
         }
-        switch (metaData.getByteOrder()) {
+        switch (meta.getByteOrder()) {
             case Big:
                 return ByteOrder.BIG_ENDIAN;
             case Little:
                 return ByteOrder.LITTLE_ENDIAN;
             default:
-                throw new RuntimeException("invalid byte order: " + metaData.getByteOrder());
+                throw new RuntimeException("invalid byte order: " + meta.getByteOrder());
         }
     }
 
     /**
      * Returns the size of the byte array containing the data.
+     * For received messages, the metadata is only decoded
+     * if the data must be decompressed.
      *
      * @return the size of the data, in bytes
      */
     public int getDataSize() {
+        if (metaData == null
+                && !hasRawField(metaDataFrame, xMsgMeta.COMPRESSION_FIELD_NUMBER)) {
+            return encodedDataSize();
+        }
+        if (dataBuffer != null) {
+            return dataBuffer.remaining();
+        }
+        byte[] bytes = decodedData();
+        return bytes != null ? bytes.length : 0;
+    }
+
+    /**
+     * Returns the size of the data as sent over the wire, without decoding
+     * the metadata of received messages.
+     */
+    int encodedDataSize() {
+        if (dataBuffer != null) {
+            return dataBuffer.remaining();
+        }
         return data != null ? data.length : 0;
     }
 
     /**
      * Returns the data of the message.
+     * <p>
+     * If the message is backed by a byte buffer, the remaining bytes of the
+     * buffer will be copied into a new array.
+     * Use {@link #getDataBuffer()} to access the data without copying it.
      *
      * @return the byte array with the raw message data
      */
     public byte[] getData() {
+        if (dataBuffer != null) {
+            byte[] array = new byte[dataBuffer.remaining()];
+            dataBuffer.duplicate().get(array);
+            return array;
+        }
+        return decodedData();
+    }
+
+    /**
+     * Returns the data array, decompressing it first if the message was
+     * received and its metadata has not been decoded yet.
+     */
+    private byte[] decodedData() {
+        if (metaData == null) {
+            decodeMetaData();
+        }
         return data;
     }
 
+    /**
+     * Returns the data of the message as a byte buffer.
+     * <p>
+     * If the message is backed by a byte buffer, the returned buffer shares
+     * its content, but it has independent position and limit.
+     * Otherwise, the data array is wrapped into a new buffer.
+     * The byte order of the buffer is set to the byte order of the data.
+     *
+     * @return a buffer with the raw message data
+     */
+    public ByteBuffer getDataBuffer() {
+        ByteBuffer buffer;
+        if (dataBuffer != null) {
+            buffer = dataBuffer.duplicate();
+        } else if (decodedData() != null) {
+            buffer = ByteBuffer.wrap(data);
+        } else {
+            buffer = ByteBuffer.allocate(0);
+        }
+        return buffer.order(getDataOrder());
+    }
+
+    /**
+     * Checks if the message is backed by a byte buffer.
+     *
+     * @return true if the message was created with a byte buffer
+     */
+    public boolean hasDataBuffer() {
+        return dataBuffer != null;
+    }
+
 
     /**
      * Constructs a message with the given data.
@@ -529,10 +874,10 @@ public class xMsgMessage {
      * @return a response message with the proper topic and the same received data
      */
     public static xMsgMessage createResponse(xMsgMessage msg) {
-        xMsgTopic resTopic = xMsgTopic.wrap(msg.metaData.getReplyTo());
-        xMsgMeta.Builder resMeta = xMsgMeta.newBuilder(msg.metaData.build());
+        xMsgTopic resTopic = msg.getReplyTopic();
+        xMsgMeta.Builder resMeta = xMsgMeta.newBuilder(msg.getMetaData().build());
         resMeta.clearReplyTo();
-        return new xMsgMessage(resTopic, resMeta, msg.data);
+        return new xMsgMessage(resTopic, resMeta, msg.data, msg.dataBuffer);
     }
 
     /**
@@ -544,7 +889,7 @@ public class xMsgMessage {
      * @return a response message with the proper topic and the given data
      */
     public static xMsgMessage createResponse(xMsgMessage msg, Object data) {
-        xMsgTopic resTopic = xMsgTopic.wrap(msg.metaData.getReplyTo());
+        xMsgTopic resTopic = msg.getReplyTopic();
         return createFrom(resTopic, data);
     }
 }
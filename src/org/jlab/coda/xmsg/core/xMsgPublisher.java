@@ -0,0 +1,180 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgProxyAddress;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A publisher bound to a fixed topic and metadata.
+ * <p>
+ * The topic and the metadata are encoded once, when the publisher is created,
+ * and the encoded frames are reused by every published message.
+ * Only the data must be passed when publishing, which avoids encoding the same
+ * topic and metadata again and again when sending many messages in a loop.
+ * The metadata can be changed with {@link #setMetaData}, and it will be
+ * re-encoded only then.
+ * <p>
+ * If the actor uses a {@link xMsgCompression compression policy},
+ * the codec for the topic is selected when the publisher is created,
+ * and the byte arrays larger than the threshold will be compressed.
+ * Byte buffers are never compressed.
+ * <p>
+ * The publisher keeps its own {@link xMsgConnection connection} to the proxy.
+ * Like connections, a publisher should be used by a single thread.
+ * It must be closed in order to return the connection to the pool.
+ *
+ * @see xMsg#createPublisher
+ * @see xMsgConnectionPool#createPublisher
+ */
+public final class xMsgPublisher implements Closeable {
+
+    private final xMsgConnection connection;
+    private final xMsgTopic topic;
+    private final byte[] topicFrame;
+
+    private final xMsgCodec codec;
+    private final int threshold;
+
+    private xMsgMeta metaData;
+    private byte[] metaDataFrame;
+    private byte[] compressedMetaDataFrame;
+
+    xMsgPublisher(xMsgConnection connection, xMsgTopic topic, xMsgMeta.Builder metaData) {
+        this(connection, topic, metaData, null);
+    }
+
+    xMsgPublisher(xMsgConnection connection,
+                  xMsgTopic topic,
+                  xMsgMeta.Builder metaData,
+                  xMsgCompression compression) {
+        Objects.requireNonNull(topic, "null topic");
+        this.connection = connection;
+        this.topic = topic;
+        this.topicFrame = topic.toBytes();
+        this.codec = compression != null ? compression.getCodec(topic) : null;
+        this.threshold = compression != null ? compression.getThreshold() : 0;
+        setMetaData(metaData);
+    }
+
+    /**
+     * Publishes the given data with the topic and metadata of this publisher.
+     * <p>
+     * The byte array will be sent as it is. It can be reused by the calling
+     * code after this method returns.
+     *
+     * @param data serialized data
+     * @throws xMsgException if the message could not be published
+     */
+    public void publish(byte[] data) throws xMsgException {
+        if (codec != null && data.length >= threshold) {
+            byte[] compressed = xMsgCodecs.compress(codec, data);
+            if (compressed.length < data.length) {
+                connection.publish(topicFrame, compressedMetaDataFrame, compressed);
+                return;
+            }
+        }
+        connection.publish(topicFrame, metaDataFrame, data);
+    }
+
+    /**
+     * Publishes the given data with the topic and metadata of this publisher.
+     * <p>
+     * The remaining bytes of the buffer will be written directly to the socket,
+     * without copying them into the heap.
+     * The position of the buffer is not modified.
+     *
+     * @param data a buffer with the serialized data
+     * @throws xMsgException if the message could not be published
+     */
+    public void publish(ByteBuffer data) throws xMsgException {
+        connection.publish(topicFrame, metaDataFrame, data);
+    }
+
+    /**
+     * Sets the metadata for the next published messages.
+     * The metadata will be encoded right away, and the encoded frame will be
+     * reused until the metadata is changed again.
+     * Further changes to the given builder will be ignored.
+     * <p>
+     * The {@code replyTo} field is always removed, since messages sent through
+     * a publisher are never sync-publish requests.
+     *
+     * @param metaData the metadata of the messages
+     */
+    public void setMetaData(xMsgMeta.Builder metaData) {
+        Objects.requireNonNull(metaData, "null metadata");
+        xMsgMeta meta = metaData.build();
+        if (meta.hasReplyTo()) {
+            meta = meta.toBuilder().clearReplyTo().build();
+        }
+        this.metaData = meta;
+        this.metaDataFrame = meta.toByteArray();
+        if (codec != null) {
+            this.compressedMetaDataFrame = meta.toBuilder()
+                                               .setCompression(codec.name())
+                                               .build()
+                                               .toByteArray();
+        }
+    }
+
+    /**
+     * Returns the metadata used by the published messages.
+     *
+     * @return the current metadata
+     */
+    public xMsgMeta getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * Returns the topic used by the published messages.
+     *
+     * @return the topic of the publisher
+     */
+    public xMsgTopic getTopic() {
+        return topic;
+    }
+
+    /**
+     * Returns the address of the connected proxy.
+     *
+     * @return the address of the proxy
+     */
+    public xMsgProxyAddress getAddress() {
+        return connection.getAddress();
+    }
+
+    /**
+     * Returns the connection used by this publisher to the connection pool.
+     */
+    @Override
+    public void close() {
+        connection.close();
+    }
+}
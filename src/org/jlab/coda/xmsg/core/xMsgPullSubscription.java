@@ -0,0 +1,173 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A subscription that keeps the received messages in a bounded queue,
+ * until the user takes them.
+ * <p>
+ * Instead of running a callback for every message, the consumer takes the
+ * messages at its own pace, waiting for the next message with
+ * {@link #take()} or {@link #poll(long, TimeUnit)}, or taking all the
+ * available messages at once with {@link #drainTo(Collection, int)}.
+ * The messages are taken in the order they were received.
+ * <p>
+ * When the queue is full the overflow policy is applied. With
+ * {@link xMsgCallbackPolicy#BLOCK} the receiving thread stops until there is
+ * space in the queue (if the subscription runs in a shared thread, the other
+ * subscriptions of the same thread are blocked too).
+ * <p>
+ * The messages that are still in the queue when the subscription is stopped
+ * can be taken after {@link xMsg#unsubscribe unsubscribing}.
+ * Once the subscription is stopped and the queue is empty, {@link #take()}
+ * returns null instead of blocking forever.
+ *
+ * @see xMsg#subscribePull
+ */
+public final class xMsgPullSubscription extends xMsgSubscription {
+
+    private static final long BLOCK_TIMEOUT = 100; // milliseconds
+
+    private final BlockingQueue<xMsgMessage> queue;
+    private final xMsgCallbackPolicy policy;
+    private final LongAdder dropped = new LongAdder();
+
+    xMsgPullSubscription(String name,
+                         xMsgProxyDriver connection,
+                         Set<xMsgTopic> topics,
+                         int capacity,
+                         xMsgCallbackPolicy policy) {
+        super(name, connection, topics);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+    }
+
+    @Override
+    void handle(xMsgMessage msg) {
+        switch (policy) {
+            case BLOCK:
+                try {
+                    while (!queue.offer(msg, BLOCK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        if (!isRunning()) {
+                            dropped.increment();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    dropped.increment();
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(msg)) {
+                    dropped.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(msg)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("invalid policy: " + policy);
+        }
+    }
+
+    /**
+     * Takes the next received message,
+     * waiting if necessary until a message is available.
+     * If the subscription is stopped while waiting, or it was already stopped,
+     * the remaining messages are returned and then null.
+     *
+     * @return the next message, or null if the subscription is stopped
+     *         and there are no more messages
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public xMsgMessage take() throws InterruptedException {
+        while (true) {
+            xMsgMessage msg = queue.poll(BLOCK_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (msg != null) {
+                return msg;
+            }
+            if (!isRunning()) {
+                // a last message may have been added before stopping
+                return queue.poll();
+            }
+        }
+    }
+
+    /**
+     * Takes the next received message,
+     * waiting up to the given time if necessary until a message is available.
+     *
+     * @param timeout how long to wait for a message
+     * @param unit the unit of the timeout
+     * @return the next message, or null if no message was received in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public xMsgMessage poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Takes all the available messages, up to the given number,
+     * and adds them to the given collection. It does not wait for messages.
+     *
+     * @param msgs the collection to which the messages are added
+     * @param maxMessages the maximum number of messages to take
+     * @return the number of messages taken
+     */
+    public int drainTo(Collection<? super xMsgMessage> msgs, int maxMessages) {
+        return queue.drainTo(msgs, maxMessages);
+    }
+
+    /**
+     * Gets the number of received messages waiting to be taken.
+     *
+     * @return the current size of the queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of received messages that were dropped
+     * because the queue was full.
+     *
+     * @return the total number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return dropped.sum();
+    }
+}
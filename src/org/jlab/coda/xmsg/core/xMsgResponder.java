@@ -0,0 +1,222 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgDirectAddress;
+import org.jlab.coda.xmsg.net.xMsgSocketFactory;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
+
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+
+/**
+ * A handler for a running direct request/reply endpoint.
+ * <p>
+ * A responder binds a ROUTER socket to a local port, and receives the requests
+ * that are sent directly to it, without going through a proxy
+ * (see {@link xMsg#syncPublish(xMsgDirectAddress, xMsgMessage, long)}).
+ * For every request, the user-provided callback will be executed, and the
+ * returned response is sent back to the requester through the same socket.
+ * A request/reply is thus completed in a single network round trip.
+ * <p>
+ * The address of the endpoint can be advertised through the registrar with
+ * {@link org.jlab.coda.xmsg.data.xMsgRegInfo#responder}, so requesters can
+ * find it with {@link xMsg#discover}.
+ * <p>
+ * The socket is only used by the responder thread. The callbacks run in the
+ * callback threads of the actor, and the responses are passed back to the
+ * responder thread through a {@link CommandPipe}.
+ * <p>
+ * Creation and destruction of responders are controlled by the xMsg actor.
+ */
+public final class xMsgResponder {
+
+    private final String name;
+    private final xMsgDirectAddress address;
+    private final xMsgReplyCallBack callback;
+    private final BiConsumer<xMsgCallBack, xMsgMessage> dispatcher;
+    private final xMsgCompression compression;
+    private final int drainLimit;
+
+    private final xMsgSocketFactory factory;
+    private final Socket socket;
+    private final CommandPipe pipe;
+    private final Thread thread;
+
+    private volatile boolean isRunning = false;
+
+    // checkstyle.off: ParameterNumber
+    xMsgResponder(String name,
+                  xMsgSocketFactory factory,
+                  int port,
+                  xMsgReplyCallBack callback,
+                  BiConsumer<xMsgCallBack, xMsgMessage> dispatcher,
+                  xMsgCompression compression,
+                  int drainLimit) throws xMsgException {
+        this.name = name;
+        this.address = new xMsgDirectAddress(xMsgUtil.localhost(), port);
+        this.callback = callback;
+        this.dispatcher = dispatcher;
+        this.compression = compression;
+        this.drainLimit = drainLimit;
+        this.factory = factory;
+        this.socket = factory.createSocket(ZMQ.ROUTER);
+        try {
+            factory.bindSocket(socket, port);
+        } catch (xMsgException | ZMQException e) {
+            factory.closeQuietly(socket);
+            throw e;
+        }
+        this.pipe = new CommandPipe(factory.context());
+        this.thread = xMsgUtil.newThread(name, this::run);
+    }
+    // checkstyle.on: ParameterNumber
+
+    void start() {
+        isRunning = true;
+        thread.start();
+    }
+
+    void stop() {
+        if (thread.getState() == Thread.State.NEW) {
+            // never started, so the responder thread will not close the socket
+            factory.closeQuietly(socket);
+            pipe.close();
+            return;
+        }
+        isRunning = false;
+        pipe.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pipe.close();
+        }
+    }
+
+    /**
+     * Returns the name of this responder.
+     *
+     * @return the name of the responder
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the address of the direct endpoint of this responder.
+     *
+     * @return the address where the requests must be sent
+     */
+    public xMsgDirectAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Indicates if the responder is running.
+     *
+     * @return true if the responder is receiving requests
+     */
+    public boolean isAlive() {
+        return isRunning && thread.isAlive();
+    }
+
+    private void run() {
+        Poller poller = factory.context().poller(2);
+        poller.register(pipe.socket(), Poller.POLLIN);
+        poller.register(socket, Poller.POLLIN);
+        try {
+            while (isRunning) {
+                try {
+                    poller.poll(-1);
+                    if (poller.pollin(1)) {
+                        receiveRequests();
+                    }
+                    if (poller.pollin(0)) {
+                        pipe.runCommands();
+                    }
+                } catch (ZMQException e) {
+                    if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                        break;
+                    }
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            pipe.runCommands();
+            poller.close();
+            factory.setLinger(socket, 0);
+            factory.closeQuietly(socket);
+        }
+    }
+
+    private void receiveRequests() {
+        for (int i = 0; i < drainLimit; i++) {
+            ZMsg rawMsg = ZMsg.recvMsg(socket, ZMQ.DONTWAIT);
+            if (rawMsg == null) {
+                break;
+            }
+            byte[] identity = rawMsg.pop().getData();
+            try {
+                xMsgMessage request = new xMsgMessage(rawMsg);
+                dispatcher.accept(req -> reply(identity, req), request);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void reply(byte[] identity, xMsgMessage request) {
+        xMsgMessage response;
+        try {
+            response = callback.callback(request);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        if (response == null) {
+            return;
+        }
+        xMsgMessage outMsg = compression.compress(response);
+        byte[] topic = outMsg.encodeTopic();
+        byte[] metaData = outMsg.encodeMetaData();
+        ByteBuffer buffer = outMsg.hasDataBuffer() ? outMsg.getDataBuffer() : null;
+        byte[] data = buffer == null ? outMsg.getData() : null;
+        pipe.execute(() -> {
+            socket.sendMore(identity);
+            socket.sendMore(topic);
+            socket.sendMore(metaData);
+            if (buffer != null) {
+                socket.sendByteBuffer(buffer, 0);
+            } else {
+                socket.send(data);
+            }
+        });
+    }
+}
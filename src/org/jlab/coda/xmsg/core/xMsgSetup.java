@@ -27,6 +27,7 @@ import org.jlab.coda.xmsg.net.xMsgRegAddress;
 import org.jlab.coda.xmsg.sys.pubsub.xMsgConnectionSetup;
 
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * Setup of an xMsg actor.
@@ -51,7 +52,20 @@ public final class xMsgSetup extends ConnectionSetup {
 
         private xMsgRegAddress registrarAddress = new xMsgRegAddress();
         private xMsgCallbackMode subscriptionMode = xMsgCallbackMode.MULTI_THREAD;
+        private Function<? super xMsgMessage, ?> callbackKey = xMsgMessage::getTopic;
+        private int subscriptionThreads = 0;
+        private int drainLimit = xMsgConstants.DEFAULT_DRAIN_LIMIT;
+        private xMsgWaitStrategy waitStrategy = xMsgWaitStrategy.blocking();
         private int poolSize = xMsgConstants.DEFAULT_POOL_SIZE;
+        private xMsgCallbackExecutor callbackExecutor = xMsgCallbackExecutor.fixedThreadPool();
+        private int callbackQueueSize = 0;
+        private xMsgCallbackPolicy callbackPolicy = xMsgCallbackPolicy.BLOCK;
+        private int ringBatchSize = xMsgConstants.DEFAULT_RING_BATCH;
+        private xMsgWaitStrategy ringWaitStrategy = xMsgWaitStrategy.blocking();
+        private int batchSize = 0;
+        private long batchDelay = 0;
+        private int publishStripes = 1;
+        private xMsgCompression compression = xMsgCompression.newBuilder().build();
 
         /**
          * Sets the address of the default registrar.
@@ -81,6 +95,53 @@ public final class xMsgSetup extends ConnectionSetup {
             return this;
         }
 
+        /**
+         * Sets the executor that runs the callbacks in multi-thread mode.
+         * By default a fixed thread-pool of the configured pool size is used.
+         *
+         * @param executor creates the executor for the callbacks
+         * @return this builder
+         * @see xMsgCallbackExecutor#forkJoinPool()
+         * @see xMsgCallbackExecutor#virtualThreads()
+         */
+        public Builder withCallbackExecutor(xMsgCallbackExecutor executor) {
+            Objects.requireNonNull(executor, "null callback executor");
+            this.callbackExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Limits the number of received messages waiting for their callback
+         * to be executed.
+         * <p>
+         * When the queue is full, the policy decides what to do with a new
+         * message: block the subscription (so messages are queued by the
+         * socket, up to its receive high-water mark), drop a message,
+         * or run the callback in the subscription thread.
+         * In {@link xMsgCallbackMode#KEYED keyed} mode every lane has its own
+         * queue with the given capacity.
+         * In {@link xMsgCallbackMode#RING ring} mode the capacity is the size
+         * of the ring (rounded up to a power of two, by default
+         * {@value org.jlab.coda.xmsg.core.xMsgConstants#DEFAULT_RING_SIZE}),
+         * and {@link xMsgCallbackPolicy#DROP_OLDEST} is not supported.
+         * <p>
+         * By default the queue is unbounded.
+         * The queue is not used in single-thread mode.
+         *
+         * @param capacity the maximum number of pending callbacks
+         * @param policy what to do with new messages when the queue is full
+         * @return this builder
+         */
+        public Builder withCallbackQueue(int capacity, xMsgCallbackPolicy policy) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("invalid queue capacity: " + capacity);
+            }
+            Objects.requireNonNull(policy, "null callback policy");
+            this.callbackQueueSize = capacity;
+            this.callbackPolicy = policy;
+            return this;
+        }
+
         /**
          * Sets the callback mode for all started subscriptions.
          * This setup will be applied every time a subscription is started.
@@ -94,17 +155,222 @@ public final class xMsgSetup extends ConnectionSetup {
             return this;
         }
 
+        /**
+         * Sets the number of threads that receive the messages of all
+         * subscriptions.
+         * <p>
+         * By default every subscription has its own background thread.
+         * With shared threads, every subscription is assigned to the event
+         * loop with fewer subscriptions, and each loop polls all the sockets of
+         * its subscriptions together, so the number of threads does not
+         * grow with the number of subscriptions.
+         * <p>
+         * Subscriptions with {@link xMsgBatchCallBack batch callbacks} do not
+         * wait for more messages when they use a shared thread, they only
+         * group the messages that are already available.
+         * In {@link xMsgCallbackMode#SINGLE_THREAD single-thread} mode the
+         * callbacks run in the shared thread, blocking the other
+         * subscriptions of the same loop.
+         *
+         * @param threads the number of shared receiving threads,
+         *                or zero to use a thread per subscription
+         * @return this builder
+         */
+        public Builder withSubscriptionThreads(int threads) {
+            if (threads < 0) {
+                throw new IllegalArgumentException("invalid number of threads: " + threads);
+            }
+            this.subscriptionThreads = threads;
+            return this;
+        }
+
+        /**
+         * Sets how the workers of the {@link xMsgCallbackMode#RING ring}
+         * callback mode take the received messages.
+         * <p>
+         * Every worker takes all the consecutive messages available in the
+         * ring at once, up to the given size, and then runs their callbacks.
+         * When the ring is empty, the workers wait with the given strategy.
+         * By default a worker takes up to
+         * {@value org.jlab.coda.xmsg.core.xMsgConstants#DEFAULT_RING_BATCH}
+         * messages, and it blocks when the ring is empty.
+         *
+         * @param maxBatch the maximum number of messages taken at once
+         * @param waitStrategy how the workers wait for new messages
+         * @return this builder
+         */
+        public Builder withRingConsumers(int maxBatch, xMsgWaitStrategy waitStrategy) {
+            if (maxBatch <= 0) {
+                throw new IllegalArgumentException("invalid batch size: " + maxBatch);
+            }
+            Objects.requireNonNull(waitStrategy, "null wait strategy");
+            this.ringBatchSize = maxBatch;
+            this.ringWaitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages that a subscription receives
+         * at once, before polling its connection again.
+         * <p>
+         * When a subscription is woken up, it keeps receiving the queued
+         * messages without blocking until there are no more messages or the
+         * limit is reached. The limit keeps a busy subscription from starving
+         * the other subscriptions of a shared thread.
+         *
+         * @param limit the maximum number of messages received per wake up
+         * @return this builder
+         */
+        public Builder withDrainLimit(int limit) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("invalid drain limit: " + limit);
+            }
+            this.drainLimit = limit;
+            return this;
+        }
+
+        /**
+         * Sets how the subscription threads wait for new messages.
+         * The strategy can be changed for every subscription with
+         * {@link xMsgSubscription#setWaitStrategy}.
+         * By default the subscriptions block until a message arrives.
+         *
+         * @param strategy the default wait strategy of the subscriptions
+         * @return this builder
+         */
+        public Builder withWaitStrategy(xMsgWaitStrategy strategy) {
+            Objects.requireNonNull(strategy, "null wait strategy");
+            this.waitStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets the function that extracts the key of received messages,
+         * to select the lane of the {@link xMsgCallbackMode#KEYED keyed}
+         * callback mode.
+         * Messages with equal keys are processed sequentially, in order.
+         * By default the key is the topic of the message.
+         *
+         * @param keyExtractor the function to get the key of a message
+         * @return this builder
+         */
+        public Builder withCallbackKey(Function<? super xMsgMessage, ?> keyExtractor) {
+            Objects.requireNonNull(keyExtractor, "null key extractor");
+            this.callbackKey = keyExtractor;
+            return this;
+        }
+
+        /**
+         * Enables coalescing small messages published asynchronously.
+         * <p>
+         * Consecutive messages for the same proxy and topic will be sent
+         * together as a single 0MQ multi-part message, until the batch
+         * reaches the given size, or the first message of the batch has
+         * been waiting for the given delay.
+         * Subscribers unpack the batch and deliver the individual messages to
+         * their callbacks.
+         * <p>
+         * The batch frames use a layout only known by this Java
+         * implementation. Do not enable batching when subscribers written
+         * with other xMsg bindings may receive the published topics.
+         * <p>
+         * Only {@link xMsg#publishAsync publishAsync} uses batching.
+         * By default batching is disabled.
+         *
+         * @param maxSize the maximum size of a batch, in bytes
+         * @param maxDelay the maximum time to wait for more messages,
+         *                 in microseconds
+         * @return this builder
+         */
+        public Builder withPublishBatching(int maxSize, long maxDelay) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("invalid batch size: " + maxSize);
+            }
+            if (maxDelay < 0) {
+                throw new IllegalArgumentException("invalid batch delay: " + maxDelay);
+            }
+            this.batchSize = maxSize;
+            this.batchDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Sets the number of connections used to publish asynchronously
+         * to the same proxy.
+         * <p>
+         * A single connection to a proxy is limited by one 0MQ I/O thread and
+         * one TCP stream. With more stripes, every proxy gets its own group of
+         * background sender threads and connections, and each message is
+         * routed to one of them by the hash of its topic, so the messages for
+         * the same topic are still received in the same order they were
+         * published.
+         * <p>
+         * The connections are spread among the I/O threads of the context.
+         * The context should be created with at least as many I/O threads as
+         * stripes (see {@link org.jlab.coda.xmsg.net.xMsgContext}).
+         * A private context not yet in use is resized to fit the stripes,
+         * but the global context is never modified: set the
+         * {@code XMSG_IO_THREADS} environment variable instead.
+         * <p>
+         * Only {@link xMsg#publishAsync publishAsync} uses striping.
+         * By default a single connection is used.
+         *
+         * @param stripes the number of connections to each proxy
+         * @return this builder
+         */
+        public Builder withPublishStripes(int stripes) {
+            if (stripes <= 0) {
+                throw new IllegalArgumentException("invalid number of stripes: " + stripes);
+            }
+            this.publishStripes = stripes;
+            return this;
+        }
+
+        /**
+         * Sets the policy to compress the data of published messages.
+         * By default messages are not compressed.
+         * <p>
+         * Received messages are always decompressed, if the codec is
+         * registered, regardless of the policy.
+         * Messages backed by a byte buffer are published without compression.
+         *
+         * @param compression the compression policy
+         * @return this builder
+         */
+        public Builder withCompression(xMsgCompression compression) {
+            Objects.requireNonNull(compression, "null compression policy");
+            this.compression = compression;
+            return this;
+        }
+
         /**
          * Creates the setup for an xMsg actor.
          *
          * @return the actor setup
          */
         public xMsgSetup build() {
+            if (subscriptionMode == xMsgCallbackMode.RING
+                    && callbackPolicy == xMsgCallbackPolicy.DROP_OLDEST) {
+                throw new IllegalArgumentException("unsupported ring policy: " + callbackPolicy);
+            }
             return new xMsgSetup(proxyAddress,
                                  registrarAddress,
                                  subscriptionMode,
+                                 callbackKey,
+                                 subscriptionThreads,
+                                 drainLimit,
+                                 waitStrategy,
                                  conSetup.build(),
-                                 poolSize);
+                                 poolSize,
+                                 callbackExecutor,
+                                 callbackQueueSize,
+                                 callbackPolicy,
+                                 ringBatchSize,
+                                 ringWaitStrategy,
+                                 batchSize,
+                                 batchDelay,
+                                 publishStripes,
+                                 compression);
         }
 
         @Override
@@ -116,18 +382,59 @@ public final class xMsgSetup extends ConnectionSetup {
 
     private final xMsgRegAddress registrarAddress;
     private final xMsgCallbackMode subscriptionMode;
+    private final Function<? super xMsgMessage, ?> callbackKey;
+    private final int subscriptionThreads;
+    private final int drainLimit;
+    private final xMsgWaitStrategy waitStrategy;
     private final int poolSize;
+    private final xMsgCallbackExecutor callbackExecutor;
+    private final int callbackQueueSize;
+    private final xMsgCallbackPolicy callbackPolicy;
+    private final int ringBatchSize;
+    private final xMsgWaitStrategy ringWaitStrategy;
+    private final int batchSize;
+    private final long batchDelay;
+    private final int publishStripes;
+    private final xMsgCompression compression;
 
+    // checkstyle.off: ParameterNumber
     private xMsgSetup(xMsgProxyAddress proxyAddress,
                       xMsgRegAddress registrarAddress,
                       xMsgCallbackMode subscriptionMode,
+                      Function<? super xMsgMessage, ?> callbackKey,
+                      int subscriptionThreads,
+                      int drainLimit,
+                      xMsgWaitStrategy waitStrategy,
                       xMsgConnectionSetup connectionSetup,
-                      int poolSize) {
+                      int poolSize,
+                      xMsgCallbackExecutor callbackExecutor,
+                      int callbackQueueSize,
+                      xMsgCallbackPolicy callbackPolicy,
+                      int ringBatchSize,
+                      xMsgWaitStrategy ringWaitStrategy,
+                      int batchSize,
+                      long batchDelay,
+                      int publishStripes,
+                      xMsgCompression compression) {
         super(proxyAddress, connectionSetup);
         this.registrarAddress = registrarAddress;
         this.subscriptionMode = subscriptionMode;
+        this.callbackKey = callbackKey;
+        this.subscriptionThreads = subscriptionThreads;
+        this.drainLimit = drainLimit;
+        this.waitStrategy = waitStrategy;
         this.poolSize = poolSize;
+        this.callbackExecutor = callbackExecutor;
+        this.callbackQueueSize = callbackQueueSize;
+        this.callbackPolicy = callbackPolicy;
+        this.ringBatchSize = ringBatchSize;
+        this.ringWaitStrategy = ringWaitStrategy;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.publishStripes = publishStripes;
+        this.compression = compression;
     }
+    // checkstyle.on: ParameterNumber
 
     /**
      * Gets the address to the default registrar.
@@ -147,6 +454,46 @@ public final class xMsgSetup extends ConnectionSetup {
         return subscriptionMode;
     }
 
+    /**
+     * Gets the function that extracts the key of received messages
+     * for the keyed callback mode.
+     *
+     * @return the key extractor
+     */
+    public Function<? super xMsgMessage, ?> callbackKey() {
+        return callbackKey;
+    }
+
+    /**
+     * Gets the number of threads that receive the messages of all
+     * subscriptions.
+     *
+     * @return the number of shared threads, or zero if every subscription
+     *         uses its own thread
+     */
+    public int subscriptionThreads() {
+        return subscriptionThreads;
+    }
+
+    /**
+     * Gets the maximum number of messages that a subscription receives
+     * at once, before polling its connection again.
+     *
+     * @return the drain limit
+     */
+    public int drainLimit() {
+        return drainLimit;
+    }
+
+    /**
+     * Gets how the subscription threads wait for new messages by default.
+     *
+     * @return the default wait strategy
+     */
+    public xMsgWaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
     /**
      * Gets the size of the callback thread-pool.
      *
@@ -155,4 +502,88 @@ public final class xMsgSetup extends ConnectionSetup {
     public int poolSize() {
         return poolSize;
     }
+
+    /**
+     * Gets the factory of the executor that runs the callbacks.
+     *
+     * @return the callback executor factory
+     */
+    public xMsgCallbackExecutor callbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Gets the maximum number of received messages waiting for their
+     * callback to be executed.
+     *
+     * @return the capacity of the callback queue, or zero if it is unbounded
+     */
+    public int callbackQueueSize() {
+        return callbackQueueSize;
+    }
+
+    /**
+     * Gets the policy to apply when the callback queue is full.
+     *
+     * @return the callback overflow policy
+     */
+    public xMsgCallbackPolicy callbackPolicy() {
+        return callbackPolicy;
+    }
+
+    /**
+     * Gets the maximum number of messages taken at once by a worker
+     * of the ring callback mode.
+     *
+     * @return the ring batch size
+     */
+    public int ringBatchSize() {
+        return ringBatchSize;
+    }
+
+    /**
+     * Gets how the workers of the ring callback mode wait for new messages.
+     *
+     * @return the ring wait strategy
+     */
+    public xMsgWaitStrategy ringWaitStrategy() {
+        return ringWaitStrategy;
+    }
+
+    /**
+     * Gets the maximum size of a batch of messages published asynchronously.
+     *
+     * @return the batch size in bytes, or zero if batching is disabled
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the maximum time to wait for more messages to fill a batch.
+     *
+     * @return the batch delay in microseconds
+     */
+    public long batchDelay() {
+        return batchDelay;
+    }
+
+    /**
+     * Gets the number of connections used to publish asynchronously
+     * to the same proxy.
+     *
+     * @return the number of publish stripes
+     */
+    public int publishStripes() {
+        return publishStripes;
+    }
+
+    /**
+     * Gets the policy to compress published messages.
+     *
+     * @return the compression policy
+     */
+    public xMsgCompression compression() {
+        return compression;
+    }
 }
@@ -31,8 +31,13 @@ import org.zeromq.ZMQ;
 import org.zeromq.ZMQException;
 import org.zeromq.ZMsg;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -43,8 +48,20 @@ import java.util.stream.Collectors;
  * <p>
  * When the subscription is created, the connection will be subscribed to
  * the topic, and a background thread will be started polling the connection for
- * received messages. For every message, the user-provide callback will be
- * executed.
+ * received messages (or the connection will be added to a shared event loop,
+ * see {@link xMsgSetup.Builder#withSubscriptionThreads}).
+ * For every message, the user-provide callback will be executed.
+ * When the connection is ready, all the queued messages are received at once
+ * (up to the {@link xMsgSetup.Builder#withDrainLimit drain limit}) before
+ * polling again.
+ * <p>
+ * A subscription can also group the received messages, and process all the
+ * messages that are available at the same time (see {@link xMsgBatchCallBack}).
+ * <p>
+ * Topics can be added to or removed from a running subscription with
+ * {@link #addTopic} and {@link #removeTopic}. The change is applied to the
+ * same socket by the thread that receives the messages,
+ * without creating a new connection.
  * <p>
  * When the subscription is destroyed, the background thread will be stopped
  * and the connection will be unsubscribed from the topic.
@@ -57,10 +74,22 @@ public abstract class xMsgSubscription {
 
     private final String name;
     private final xMsgProxyDriver connection;
-    private final List<String> topics;
+    private final CopyOnWriteArrayList<String> topics;
+
+    private final int batchSize;
+    private final long batchDelay;
+
+    private final List<xMsgMessage> received = new ArrayList<>();
 
-    private final Thread thread;
+    private int drainLimit = xMsgConstants.DEFAULT_DRAIN_LIMIT;
+    private volatile xMsgWaitStrategy waitStrategy = xMsgWaitStrategy.blocking();
+
+    private Thread thread;
+    private volatile CommandPipe pipe;
+    private SubscriptionLoop loop;
+    private final Object commandLock = new Object();
     private volatile boolean isRunning = false;
+    private volatile boolean isClosed = false;
 
     /**
      * Creates a long-running subscription that process messages on the background.
@@ -68,10 +97,31 @@ public abstract class xMsgSubscription {
      * @see xMsg#subscribe
      */
     xMsgSubscription(String name, xMsgProxyDriver connection, Set<xMsgTopic> topics) {
+        this(name, connection, topics, 0, 0);
+    }
+
+    /**
+     * Creates a long-running subscription that process groups of messages
+     * on the background.
+     * If the batch size is zero, every message is processed individually.
+     *
+     * @param batchSize the maximum number of messages in a group
+     * @param batchDelay the maximum time to wait for more messages,
+     *                   in microseconds
+     * @see xMsg#subscribe
+     */
+    xMsgSubscription(String name,
+                     xMsgProxyDriver connection,
+                     Set<xMsgTopic> topics,
+                     int batchSize,
+                     long batchDelay) {
         this.name = name;
         this.connection = connection;
-        this.topics = topics.stream().map(xMsgTopic::toString).collect(Collectors.toList());
-        this.thread = xMsgUtil.newThread(name, new Handler());
+        this.topics = topics.stream()
+                            .map(xMsgTopic::toString)
+                            .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
+        this.batchSize = batchSize;
+        this.batchDelay = TimeUnit.MICROSECONDS.toNanos(batchDelay);
     }
 
 
@@ -83,37 +133,67 @@ public abstract class xMsgSubscription {
      */
     abstract void handle(xMsgMessage msg) throws xMsgException;
 
+    /**
+     * Process a group of received messages.
+     * By default every message is processed individually.
+     *
+     * @param msgs the received messages
+     * @throws xMsgException if there was an error handling the messages
+     */
+    void handle(List<xMsgMessage> msgs) throws xMsgException {
+        for (xMsgMessage msg : msgs) {
+            handle(msg);
+        }
+    }
+
 
     /**
      * Receives messages and runs user's callback.
      */
     private class Handler implements Runnable {
 
+        // the command pipe is only created when the topics are changed
+        private xMsgPoller poller;
+        private CommandPipe polledPipe;
+
         @Override
         public void run() {
-            try (xMsgPoller poller = new xMsgPoller(connection)) {
-                waitMessages(poller);
+            poller = new xMsgPoller(connection);
+            try {
+                waitMessages();
+            } finally {
+                poller.close();
+                CommandPipe commands = pipe;
+                if (commands != null) {
+                    commands.runCommands();
+                }
+            }
+        }
+
+        private boolean poll(long timeout) {
+            CommandPipe commands = pipe;
+            if (commands != polledPipe) {
+                poller.close();
+                poller = new xMsgPoller(connection, commands.socket());
+                polledPipe = commands;
+            }
+            boolean ready = poller.poll(timeout);
+            if (poller.pipeReady()) {
+                commands.runCommands();
             }
+            return ready;
         }
 
-        private void waitMessages(xMsgPoller poller) {
+        private boolean spinning = false;
+
+        private void waitMessages() {
             while (isRunning) {
                 try {
-                    if (poller.poll(100)) {
-                        ZMsg msg = connection.recv();
-                        if (msg == null) {
+                    if (awaitMessages()) {
+                        boolean alive = batchSize > 0 ? receiveBatch() : receive();
+                        if (!alive) {
                             break; // interrupted
                         }
-                        try {
-                            if (msg.size() == 2) {
-                                // ignore control message
-                                // (which are composed of 2 frames)
-                                continue;
-                            }
-                            handle(new xMsgMessage(msg));
-                        } catch (xMsgException e) {
-                            e.printStackTrace();
-                        }
                     }
                 } catch (ZMQException e) {
                     if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
@@ -123,41 +203,282 @@ public abstract class xMsgSubscription {
                 }
             }
         }
+
+        // spins only after receiving messages, to not burn CPU while idle
+        private boolean awaitMessages() {
+            long spinTime = waitStrategy.spinTime();
+            if (spinning && spinTime > 0) {
+                long deadline = System.nanoTime() + spinTime;
+                while (isRunning && System.nanoTime() - deadline < 0) {
+                    if (poll(0)) {
+                        return true;
+                    }
+                }
+            }
+            spinning = poll(100);
+            return spinning;
+        }
+
+        private boolean receiveBatch() {
+            List<xMsgMessage> batch = new ArrayList<>();
+            boolean alive = receiveInto(batch, 0);
+
+            // drain the available messages, waiting a short time for more
+            long deadline = System.nanoTime() + batchDelay;
+            while (alive && batch.size() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (poll(batchPollTimeout(remaining))) {
+                    alive = receiveInto(batch, 0);
+                } else if (remaining <= 0) {
+                    break;
+                }
+            }
+
+            handleBatch(batch);
+            return alive;
+        }
     }
 
     /**
-     * Starts the subscription thread.
+     * Returns the poll timeout to wait for more messages of a batch,
+     * in milliseconds.
+     * The timeout is rounded down, so the poll never waits past the deadline.
+     * For the last fraction of a millisecond the timeout is zero, and the
+     * subscription spins until the deadline to honor sub-millisecond delays.
+     *
+     * @param remaining the remaining time until the deadline, in nanoseconds
+     */
+    static long batchPollTimeout(long remaining) {
+        return remaining > 0 ? TimeUnit.NANOSECONDS.toMillis(remaining) : 0;
+    }
+
+    /**
+     * Receives the messages of a socket that is ready for reading,
+     * when the subscription is polled by a shared event loop.
+     * Grouped messages are delivered without waiting for more messages.
+     */
+    void receiveReady() {
+        if (!isRunning) {
+            return;
+        }
+        if (batchSize > 0) {
+            List<xMsgMessage> batch = new ArrayList<>();
+            boolean available = true;
+            while (available && batch.size() < batchSize) {
+                available = receiveInto(batch, ZMQ.DONTWAIT);
+            }
+            handleBatch(batch);
+        } else {
+            receive();
+        }
+    }
+
+    /**
+     * Receives all the queued messages, up to the drain limit,
+     * and then processes them.
+     * The socket must be ready for reading.
+     */
+    private boolean receive() {
+        try {
+            if (!receiveInto(received, 0)) {
+                return false;
+            }
+            int count = 1;
+            while (count < drainLimit && receiveInto(received, ZMQ.DONTWAIT)) {
+                count++;
+            }
+            for (xMsgMessage msg : received) {
+                handle(msg);
+            }
+        } catch (xMsgException e) {
+            e.printStackTrace();
+        } finally {
+            received.clear();
+        }
+        return true;
+    }
+
+    private void handleBatch(List<xMsgMessage> batch) {
+        if (!batch.isEmpty()) {
+            try {
+                handle(batch);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // returns false if no message was received (interrupted or not available)
+    private boolean receiveInto(List<xMsgMessage> msgs, int flags) {
+        ZMsg msg = connection.recv(flags);
+        if (msg == null) {
+            return false;
+        }
+        try {
+            if (msg.size() == 2) {
+                // ignore control message
+                // (which are composed of 2 frames)
+                return true;
+            }
+            if (msg.size() > 3) {
+                // unpack the messages coalesced by a batching publisher
+                msgs.addAll(xMsgMessage.unpackBatch(msg));
+                return true;
+            }
+            msgs.add(new xMsgMessage(msg));
+        } catch (xMsgException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * Starts receiving messages, either in the given shared event loop,
+     * or in a new background subscription thread if there is no loop.
      *
      * @throws xMsgException if subscription could not be started
      */
-    void start(xMsgConnectionSetup setup) throws xMsgException {
-        setup.preSubscription(connection.getSocket());
+    void start(xMsgSetup setup, SubscriptionLoop loop) throws xMsgException {
+        xMsgConnectionSetup conSetup = setup.connectionSetup();
+        conSetup.preSubscription(connection.getSocket());
         topics.forEach(connection::subscribe);
-        if (setup.checkSubscription()
-                && !connection.checkSubscription(topics.get(0), setup.subscriptionTimeout())) {
+        if (conSetup.checkSubscription()
+                && !connection.checkSubscription(topics.get(0), conSetup.subscriptionTimeout())) {
             topics.forEach(connection::unsubscribe);
             throw new xMsgException(subscriptionError());
         }
-        setup.postSubscription();
+        conSetup.postSubscription();
+        drainLimit = setup.drainLimit();
+        waitStrategy = setup.waitStrategy();
         isRunning = true;
-        thread.start();
+        if (loop != null) {
+            this.loop = loop;
+            loop.register(this);
+        } else {
+            thread = xMsgUtil.newThread(name, new Handler());
+            thread.start();
+        }
     }
 
     /**
      * Stops the background subscription thread and unsubscribes the socket.
      */
     void stop() {
-        try {
+        synchronized (commandLock) {
             isRunning = false;
-            thread.join();
+        }
+        if (loop != null) {
+            loop.unregister(this, this::close);
+            return;
+        }
+        try {
+            if (thread != null) {
+                CommandPipe commands = pipe;
+                if (commands != null) {
+                    commands.wakeup();
+                }
+                thread.join();
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            topics.forEach(connection::unsubscribe);
-            connection.close();
+            close();
+        }
+    }
+
+    private void close() {
+        topics.forEach(connection::unsubscribe);
+        connection.close();
+        if (pipe != null) {
+            pipe.close();
+        }
+        isClosed = true;
+    }
+
+    /**
+     * Subscribes the running subscription to a new topic.
+     * The topic is added to the socket by the thread that receives the
+     * messages, and this method returns when the change has been applied.
+     * As with any subscription, the proxy may need some time to start sending
+     * the messages of the new topic.
+     *
+     * @param topic the topic to be added
+     * @throws IllegalStateException if the subscription is not running
+     */
+    public void addTopic(xMsgTopic topic) {
+        String value = topic.toString();
+        runCommand(() -> {
+            if (topics.addIfAbsent(value)) {
+                connection.subscribe(value);
+            }
+        });
+    }
+
+    /**
+     * Unsubscribes the running subscription from one of its topics.
+     * The topic is removed from the socket by the thread that receives the
+     * messages, and this method returns when the change has been applied.
+     * Messages of the topic that were already received may still be processed.
+     *
+     * @param topic the topic to be removed
+     * @throws IllegalStateException if the subscription is not running
+     */
+    public void removeTopic(xMsgTopic topic) {
+        String value = topic.toString();
+        runCommand(() -> {
+            if (topics.remove(value)) {
+                connection.unsubscribe(value);
+            }
+        });
+    }
+
+    // the socket can only be used by the thread that receives the messages
+    private void runCommand(Runnable command) {
+        boolean ownerThread = loop != null
+                ? loop.isLoopThread()
+                : Thread.currentThread() == thread;
+        if (ownerThread) {
+            if (!isRunning) {
+                throw new IllegalStateException("subscription is not running");
+            }
+            command.run();
+            return;
+        }
+        // a shared loop keeps running after the socket has been closed
+        Runnable guarded = () -> {
+            if (!isClosed) {
+                command.run();
+            }
+        };
+        // the lock only guards the queueing, so stop() is never blocked
+        // while the caller waits for the command
+        CountDownLatch done;
+        synchronized (commandLock) {
+            if (!isRunning) {
+                throw new IllegalStateException("subscription is not running");
+            }
+            if (loop != null) {
+                done = loop.submit(guarded);
+            } else {
+                if (pipe == null) {
+                    // the subscription thread will start polling it
+                    pipe = new CommandPipe(connection.getContext());
+                }
+                done = pipe.submit(guarded);
+            }
+        }
+        boolean executed = loop != null
+                ? loop.await(done)
+                : CommandPipe.await(done, thread);
+        if (!executed) {
+            throw new IllegalStateException("subscription is not running");
         }
     }
 
+    ZMQ.Socket getSocket() {
+        return connection.getSocket();
+    }
+
     private String subscriptionError() {
         int size = topics.size();
         StringBuilder sb = new StringBuilder();
@@ -182,6 +503,7 @@ public abstract class xMsgSubscription {
 
     /**
      * Gets the set of subscribed topics of interest.
+     * It includes the topics added to the running subscription.
      *
      * @return the subscribed topics
      */
@@ -195,7 +517,35 @@ public abstract class xMsgSubscription {
      * @return true if the subscription is running, false otherwise
      */
     public boolean isAlive() {
-        return thread.isAlive();
+        if (loop != null) {
+            return !isClosed;
+        }
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Changes how the subscription thread waits for new messages.
+     * It has no effect if the subscription runs in a shared thread.
+     *
+     * @param strategy the new wait strategy
+     * @see xMsgSetup.Builder#withWaitStrategy
+     */
+    public void setWaitStrategy(xMsgWaitStrategy strategy) {
+        Objects.requireNonNull(strategy, "null wait strategy");
+        this.waitStrategy = strategy;
+    }
+
+    /**
+     * Gets how the subscription thread waits for new messages.
+     *
+     * @return the current wait strategy
+     */
+    public xMsgWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    boolean isRunning() {
+        return isRunning;
     }
 
     String getName() {
@@ -22,7 +22,7 @@
 
 package org.jlab.coda.xmsg.core;
 
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.StringTokenizer;
 
 /**
@@ -84,6 +84,9 @@ public final class xMsgTopic {
 
     private final String topic;
 
+    // the encoded topic, shared by all published messages
+    private final byte[] bytes;
+
 
     /**
      * Construct a valid xMsg topic.
@@ -110,6 +113,7 @@ public final class xMsgTopic {
         }
 
         this.topic = topic.toString();
+        this.bytes = this.topic.getBytes(StandardCharsets.UTF_8);
     }
 
 
@@ -118,7 +122,12 @@ public final class xMsgTopic {
      * The string must be a valid topic.
      */
     private xMsgTopic(String topic) {
+        this(topic, topic.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private xMsgTopic(String topic, byte[] bytes) {
         this.topic = topic;
+        this.bytes = bytes;
     }
 
     /**
@@ -176,7 +185,7 @@ public final class xMsgTopic {
      * @param bytes binary representation of a valid xMsg topic
      */
     static xMsgTopic wrap(byte[] bytes) {
-        return new xMsgTopic(new String(bytes, Charset.forName("UTF-8")));
+        return new xMsgTopic(new String(bytes, StandardCharsets.UTF_8), bytes);
     }
 
     /**
@@ -254,6 +263,15 @@ public final class xMsgTopic {
     }
 
 
+    /**
+     * Returns the binary representation of the topic, to be sent as the first
+     * frame of a message.
+     * The array is shared, it must not be modified.
+     */
+    byte[] toBytes() {
+        return bytes;
+    }
+
     @Override
     public String toString() {
         return topic;
@@ -0,0 +1,95 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specifies how a subscription thread waits for new messages.
+ * <p>
+ * By default the thread blocks polling the connection until a message
+ * arrives. When low latency is more important than CPU usage, the thread
+ * can keep checking the connection without blocking for some time after
+ * the last received message, and only then go back to blocking.
+ * <p>
+ * The strategy is only used by subscriptions that run in their own thread.
+ * Subscriptions in a shared event loop always block.
+ * The workers of the {@link xMsgCallbackMode#RING ring} callback mode
+ * use their own strategy to wait for new messages in the ring.
+ *
+ * @see xMsgSetup.Builder#withWaitStrategy(xMsgWaitStrategy)
+ * @see xMsgSetup.Builder#withRingConsumers(int, xMsgWaitStrategy)
+ * @see xMsgSubscription#setWaitStrategy(xMsgWaitStrategy)
+ */
+public final class xMsgWaitStrategy {
+
+    private static final xMsgWaitStrategy BLOCKING = new xMsgWaitStrategy(0);
+
+    private final long spinTime;
+
+    /**
+     * Gets the strategy that always blocks until a message is received.
+     *
+     * @return the blocking strategy
+     */
+    public static xMsgWaitStrategy blocking() {
+        return BLOCKING;
+    }
+
+    /**
+     * Creates a strategy that polls the connection without blocking during
+     * the given time after the last received message, and then blocks.
+     *
+     * @param spinTime how long to keep polling without blocking
+     * @param unit the unit of the spin time
+     * @return the spin-then-park strategy
+     */
+    public static xMsgWaitStrategy spinThenPark(long spinTime, TimeUnit unit) {
+        if (spinTime <= 0) {
+            throw new IllegalArgumentException("invalid spin time: " + spinTime);
+        }
+        return new xMsgWaitStrategy(unit.toNanos(spinTime));
+    }
+
+    private xMsgWaitStrategy(long spinTime) {
+        this.spinTime = spinTime;
+    }
+
+    /**
+     * Gets how long the subscription polls without blocking
+     * after the last received message.
+     *
+     * @return the spin time in nanoseconds, or zero if it always blocks
+     */
+    public long spinTime() {
+        return spinTime;
+    }
+
+    @Override
+    public String toString() {
+        if (spinTime == 0) {
+            return "blocking";
+        }
+        return "spinThenPark[" + spinTime + "ns]";
+    }
+}
@@ -24,6 +24,7 @@ package org.jlab.coda.xmsg.data;
 
 import org.jlab.coda.xmsg.core.xMsgTopic;
 import org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration;
+import org.jlab.coda.xmsg.net.xMsgDirectAddress;
 
 /**
  * Defines the parameters to register an xMsg actor with the registrar service.
@@ -33,6 +34,7 @@ public final class xMsgRegInfo {
     private final xMsgRegistration.OwnerType type;
     private final xMsgTopic topic;
     private final String description;
+    private final xMsgDirectAddress directAddress;
 
     /**
      * Describes a publication to the given topic.
@@ -76,10 +78,47 @@ public final class xMsgRegInfo {
         return subscriber(topic, "");
     }
 
+    /**
+     * Describes a responder serving requests of the given topic
+     * through a direct request/reply endpoint.
+     * It is registered as a subscriber to the topic.
+     *
+     * @param topic the topic of the requests
+     * @param address the address of the direct endpoint
+     * @param description general description of the responder
+     * @return the information required to (de)register an xMsg actor as a responder
+     */
+    public static xMsgRegInfo responder(xMsgTopic topic,
+                                        xMsgDirectAddress address,
+                                        String description) {
+        return new xMsgRegInfo(xMsgRegistration.OwnerType.SUBSCRIBER, topic, description,
+                               address);
+    }
+
+    /**
+     * Describes a responder serving requests of the given topic
+     * through a direct request/reply endpoint.
+     *
+     * @param topic the topic of the requests
+     * @param address the address of the direct endpoint
+     * @return the information required to (de)register an xMsg actor as a responder
+     */
+    public static xMsgRegInfo responder(xMsgTopic topic, xMsgDirectAddress address) {
+        return responder(topic, address, "");
+    }
+
     private xMsgRegInfo(xMsgRegistration.OwnerType type, xMsgTopic topic, String description) {
+        this(type, topic, description, null);
+    }
+
+    private xMsgRegInfo(xMsgRegistration.OwnerType type,
+                        xMsgTopic topic,
+                        String description,
+                        xMsgDirectAddress directAddress) {
         this.type = type;
         this.topic = topic;
         this.description = description;
+        this.directAddress = directAddress;
     }
 
     /**
@@ -108,4 +147,14 @@ public final class xMsgRegInfo {
     public String description() {
         return description;
     }
+
+    /**
+     * Returns the direct request/reply endpoint parameter.
+     *
+     * @return the address of the direct endpoint, or null if the actor
+     *         is not a responder
+     */
+    public xMsgDirectAddress directAddress() {
+        return directAddress;
+    }
 }
@@ -24,6 +24,7 @@ package org.jlab.coda.xmsg.data;
 
 import org.jlab.coda.xmsg.core.xMsgTopic;
 import org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration;
+import org.jlab.coda.xmsg.net.xMsgDirectAddress;
 import org.jlab.coda.xmsg.net.xMsgProxyAddress;
 
 /**
@@ -71,6 +72,21 @@ public class xMsgRegRecord {
         return new xMsgProxyAddress(data.getHost(), data.getPort());
     }
 
+    /**
+     * Returns the direct request/reply endpoint of the registered actor,
+     * if it is a responder.
+     * Requests to this address bypass the proxy.
+     *
+     * @return the direct address of the actor, or null if the actor
+     *         has no direct endpoint
+     */
+    public xMsgDirectAddress directAddress() {
+        if (!data.hasDirectHost()) {
+            return null;
+        }
+        return new xMsgDirectAddress(data.getDirectHost(), data.getDirectPort());
+    }
+
     /**
      * Returns the topic of interest for the registered actor.
      *
@@ -84,6 +84,7 @@ public class xMsgConnectionFactory {
     private void prepareProxyConnection(xMsgProxyDriver connection, xMsgConnectionSetup setup)
             throws xMsgException {
         try {
+            connection.configure(setup);
             setup.preConnection(connection.getSocket());
             connection.connect();
             xMsgUtil.sleep(10);
@@ -22,6 +22,7 @@
 
 package org.jlab.coda.xmsg.net;
 
+import org.jlab.coda.xmsg.sys.util.Environment;
 import org.zeromq.ZContext;
 import org.zeromq.ZMQ.Context;
 
@@ -37,12 +38,19 @@ import org.zeromq.ZMQ.Context;
  * New contexts can be created with {@link #newContext()},
  * for cases when the global context cannot be used
  * (i.e. the context should be destroyed before exiting the application)
+ * <p>
+ * The global context uses a single I/O thread by default. The
+ * {@code XMSG_IO_THREADS} environment variable can be set to use more threads,
+ * for example to spread the sockets of a
+ * {@link org.jlab.coda.xmsg.core.xMsgSetup.Builder#withPublishStripes striped}
+ * publisher over many threads. Invalid values are ignored.
  *
  * @since 2.x
  */
 public final class xMsgContext implements AutoCloseable {
 
-    private static final xMsgContext ourInstance = new xMsgContext();  // nocheck: ConstantName
+    private static final xMsgContext ourInstance =  // nocheck: ConstantName
+            new xMsgContext(defaultIOThreads());
 
     // xMsg uses ZMQ.Context for all context operations, but some jeromq APIs
     // may require a shadow ZContext and since 0.4.x a shadow context cannot be
@@ -50,8 +58,23 @@ public final class xMsgContext implements AutoCloseable {
     // ZContext.
     private final ZContext ctx;
 
-    private xMsgContext() {
-        ctx = new ZContext(1);
+    private xMsgContext(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("invalid number of I/O threads: " + ioThreads);
+        }
+        ctx = new ZContext(ioThreads);
+    }
+
+    private static int defaultIOThreads() {
+        try {
+            long ioThreads = Environment.getLong("XMSG_IO_THREADS", 1);
+            if (ioThreads > 0 && ioThreads <= Integer.MAX_VALUE) {
+                return (int) ioThreads;
+            }
+        } catch (IllegalArgumentException e) {
+            // fall back to the default
+        }
+        return 1;
     }
 
     /**
@@ -69,7 +92,17 @@ public final class xMsgContext implements AutoCloseable {
      * @return the created xMsg context
      */
     public static xMsgContext newContext() {
-        return new xMsgContext();
+        return new xMsgContext(1);
+    }
+
+    /**
+     * Creates a new xMsg context with the given number of I/O threads.
+     *
+     * @param ioThreads the size of the 0MQ thread pool to handle I/O operations
+     * @return the created xMsg context
+     */
+    public static xMsgContext newContext(int ioThreads) {
+        return new xMsgContext(ioThreads);
     }
 
     /**
@@ -83,6 +116,8 @@ public final class xMsgContext implements AutoCloseable {
 
     /**
      * Set the size of the 0MQ thread pool to handle I/O operations.
+     * The I/O threads are started when the first socket is created,
+     * so this has no effect once the context is in use.
      *
      * @param ioThreads the number of I/O threads
      */
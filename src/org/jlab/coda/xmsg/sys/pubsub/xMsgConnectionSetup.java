@@ -23,6 +23,7 @@
 package org.jlab.coda.xmsg.sys.pubsub;
 
 import org.jlab.coda.xmsg.core.xMsgConstants;
+import org.jlab.coda.xmsg.core.xMsgOverflowPolicy;
 import org.jlab.coda.xmsg.core.xMsgUtil;
 import org.jlab.coda.xmsg.sys.util.Environment;
 import org.zeromq.ZMQ.Socket;
@@ -62,6 +63,10 @@ public final class xMsgConnectionSetup {
         private boolean checkConnection;
         private boolean checkSubscription;
 
+        private int sendHighWaterMark;
+        private int receiveHighWaterMark;
+        private xMsgOverflowPolicy overflowPolicy;
+
         private Builder() {
             final long postConSleep = Environment.getLong("XMSG_POST_CONNECTION_SLEEP", 0);
             final long postSubSleep = Environment.getLong("XMSG_POST_SUBSCRIPTION_SLEEP", 10);
@@ -79,6 +84,22 @@ public final class xMsgConnectionSetup {
 
             checkConnection = !Environment.isDefined("XMSG_NO_CHECK_CONNECTION");
             checkSubscription = !Environment.isDefined("XMSG_NO_CHECK_SUBSCRIPTION");
+
+            sendHighWaterMark = defaultHighWaterMark("XMSG_SEND_HWM");
+            receiveHighWaterMark = defaultHighWaterMark("XMSG_RECEIVE_HWM");
+            overflowPolicy = xMsgOverflowPolicy.DROP_NEWEST;
+        }
+
+        private static int defaultHighWaterMark(String var) {
+            try {
+                long hwm = Environment.getLong(var, 0);
+                if (hwm <= Integer.MAX_VALUE) {
+                    return (int) hwm;
+                }
+            } catch (IllegalArgumentException e) {
+                // fall back to the default
+            }
+            return 0;
         }
 
         /**
@@ -186,6 +207,55 @@ public final class xMsgConnectionSetup {
             return this;
         }
 
+        /**
+         * Sets the maximum number of outstanding messages that can be queued
+         * by a publisher connection.
+         * When the limit is reached, new messages are handled according to
+         * the overflow policy.
+         * Zero means no limit.
+         *
+         * @param hwm the high-water mark for outgoing messages
+         * @return this builder
+         */
+        public Builder withSendHighWaterMark(int hwm) {
+            if (hwm < 0) {
+                throw new IllegalArgumentException("invalid high-water mark: " + hwm);
+            }
+            this.sendHighWaterMark = hwm;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of outstanding messages that can be queued
+         * by a subscription.
+         * When the limit is reached, new messages are queued by the proxy,
+         * which only drops them if it was started with a high-water mark.
+         * Zero means no limit.
+         *
+         * @param hwm the high-water mark for incoming messages
+         * @return this builder
+         */
+        public Builder withReceiveHighWaterMark(int hwm) {
+            if (hwm < 0) {
+                throw new IllegalArgumentException("invalid high-water mark: " + hwm);
+            }
+            this.receiveHighWaterMark = hwm;
+            return this;
+        }
+
+        /**
+         * Sets what to do with new messages when a publisher connection
+         * reaches its high-water mark.
+         *
+         * @param policy the overflow policy
+         * @return this builder
+         */
+        public Builder withOverflowPolicy(xMsgOverflowPolicy policy) {
+            Objects.requireNonNull(policy, "null overflow policy");
+            this.overflowPolicy = policy;
+            return this;
+        }
+
         /**
          * Creates the setup.
          *
@@ -199,7 +269,10 @@ public final class xMsgConnectionSetup {
                                            connectionTimeout,
                                            subscriptionTimeout,
                                            checkConnection,
-                                           checkSubscription);
+                                           checkSubscription,
+                                           sendHighWaterMark,
+                                           receiveHighWaterMark,
+                                           overflowPolicy);
         }
     }
 
@@ -216,6 +289,10 @@ public final class xMsgConnectionSetup {
     private final boolean checkConnection;
     private final boolean checkSubscription;
 
+    private final int sendHighWaterMark;
+    private final int receiveHighWaterMark;
+    private final xMsgOverflowPolicy overflowPolicy;
+
 
     // checkstyle.off: ParameterNumber
     private xMsgConnectionSetup(Consumer<Socket> preConnection,
@@ -225,7 +302,10 @@ public final class xMsgConnectionSetup {
                                 long connectionTimeout,
                                 long subscriptionTimeout,
                                 boolean checkConnection,
-                                boolean checkSubscription) {
+                                boolean checkSubscription,
+                                int sendHighWaterMark,
+                                int receiveHighWaterMark,
+                                xMsgOverflowPolicy overflowPolicy) {
         this.preConnection = preConnection;
         this.postConnection = postConnection;
         this.preSubscription = preSubscription;
@@ -234,6 +314,9 @@ public final class xMsgConnectionSetup {
         this.subscriptionTimeout = subscriptionTimeout;
         this.checkConnection = checkConnection;
         this.checkSubscription = checkSubscription;
+        this.sendHighWaterMark = sendHighWaterMark;
+        this.receiveHighWaterMark = receiveHighWaterMark;
+        this.overflowPolicy = overflowPolicy;
     }
     // checkstyle.on: ParameterNumber
 
@@ -307,4 +390,32 @@ public final class xMsgConnectionSetup {
     public boolean checkSubscription() {
         return checkSubscription;
     }
+
+    /**
+     * Gets the high-water mark for publisher connections.
+     *
+     * @return the maximum number of outgoing messages queued by a connection
+     */
+    public int sendHighWaterMark() {
+        return sendHighWaterMark;
+    }
+
+    /**
+     * Gets the high-water mark for subscriptions.
+     *
+     * @return the maximum number of incoming messages queued by a subscription
+     */
+    public int receiveHighWaterMark() {
+        return receiveHighWaterMark;
+    }
+
+    /**
+     * Gets the policy for publisher connections that reached the high-water
+     * mark.
+     *
+     * @return the overflow policy
+     */
+    public xMsgOverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
 }
@@ -32,11 +32,21 @@ public class xMsgPoller implements Closeable {
 
     final Socket subSocket;
     final Poller poller;
+    final boolean hasPipe;
 
     public xMsgPoller(xMsgProxyDriver connection) {
         this.subSocket = connection.getSocket();
         this.poller = connection.getContext().poller(1);
         this.poller.register(subSocket, Poller.POLLIN);
+        this.hasPipe = false;
+    }
+
+    public xMsgPoller(xMsgProxyDriver connection, Socket pipeSocket) {
+        this.subSocket = connection.getSocket();
+        this.poller = connection.getContext().poller(2);
+        this.poller.register(subSocket, Poller.POLLIN);
+        this.poller.register(pipeSocket, Poller.POLLIN);
+        this.hasPipe = true;
     }
 
     public boolean poll(long timeout) {
@@ -47,6 +57,10 @@ public class xMsgPoller implements Closeable {
         return poller.pollin(0);
     }
 
+    public boolean pipeReady() {
+        return hasPipe && poller.pollin(1);
+    }
+
     @Override
     public void close() {
         poller.close();
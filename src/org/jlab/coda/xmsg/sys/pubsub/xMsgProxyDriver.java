@@ -22,6 +22,7 @@
 
 package org.jlab.coda.xmsg.sys.pubsub;
 
+import org.jlab.coda.xmsg.core.xMsgOverflowPolicy;
 import org.jlab.coda.xmsg.excp.xMsgException;
 import org.jlab.coda.xmsg.net.xMsgProxyAddress;
 import org.jlab.coda.xmsg.net.xMsgSocketFactory;
@@ -33,6 +34,8 @@ import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMQException;
 import org.zeromq.ZMsg;
 
+import java.nio.ByteBuffer;
+
 public abstract class xMsgProxyDriver {
 
     protected final xMsgProxyAddress address;
@@ -40,6 +43,9 @@ public abstract class xMsgProxyDriver {
 
     private final xMsgSocketFactory factory;
 
+    private xMsgOverflowPolicy overflowPolicy = xMsgOverflowPolicy.DROP_NEWEST;
+    private int sendFlags = 0;
+
 
     public static xMsgProxyDriver publisher(xMsgProxyAddress address, xMsgSocketFactory factory)
             throws xMsgException {
@@ -65,6 +71,8 @@ public abstract class xMsgProxyDriver {
 
     abstract int getPort();
 
+    public abstract void configure(xMsgConnectionSetup setup);
+
     public boolean checkConnection(long timeout) throws xMsgException {
         String identity = IdentityGenerator.getCtrlId();
         Socket ctrlSocket = createControlSocket(identity);
@@ -155,10 +163,73 @@ public abstract class xMsgProxyDriver {
         msg.send(socket);
     }
 
+    public boolean send(byte[] topic, byte[] metaData, byte[] data) throws xMsgException {
+        if (!socket.send(topic, sendFlags | ZMQ.SNDMORE)) {
+            return overflow();
+        }
+        socket.send(metaData, sendFlags | ZMQ.SNDMORE);
+        socket.send(data, sendFlags);
+        return true;
+    }
+
+    public boolean send(byte[] topic, byte[] metaData, ByteBuffer data) throws xMsgException {
+        if (!socket.send(topic, sendFlags | ZMQ.SNDMORE)) {
+            return overflow();
+        }
+        socket.send(metaData, sendFlags | ZMQ.SNDMORE);
+        socket.sendByteBuffer(data.duplicate(), sendFlags);
+        return true;
+    }
+
+    public boolean sendBatchTopic(byte[] topic) throws xMsgException {
+        if (!socket.send(topic, sendFlags | ZMQ.SNDMORE)) {
+            return overflow();
+        }
+        return true;
+    }
+
+    public void sendBatchPart(byte[] metaData, byte[] data, boolean last) {
+        socket.send(metaData, sendFlags | ZMQ.SNDMORE);
+        socket.send(data, last ? sendFlags : sendFlags | ZMQ.SNDMORE);
+    }
+
+    public void sendBatchPart(byte[] metaData, ByteBuffer data, boolean last) {
+        socket.send(metaData, sendFlags | ZMQ.SNDMORE);
+        socket.sendByteBuffer(data.duplicate(), last ? sendFlags : sendFlags | ZMQ.SNDMORE);
+    }
+
+    void setOverflowPolicy(int hwm, xMsgOverflowPolicy policy) {
+        overflowPolicy = policy;
+        if (hwm > 0) {
+            // report full queues instead of silently dropping messages
+            socket.setSndHWM(hwm);
+            socket.setXpubNoDrop(true);
+            if (policy != xMsgOverflowPolicy.BLOCK) {
+                sendFlags = ZMQ.DONTWAIT;
+            }
+        }
+    }
+
+    private boolean overflow() throws xMsgException {
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+            case DROP_OLDEST:
+                return false;
+            case BLOCK:
+                throw new xMsgException("timeout sending message to " + address);
+            default:
+                throw new xMsgException("high-water mark reached sending message to " + address);
+        }
+    }
+
     public ZMsg recv() {
         return ZMsg.recvMsg(socket);
     }
 
+    public ZMsg recv(int flags) {
+        return ZMsg.recvMsg(socket, flags);
+    }
+
     public void close() {
         factory.closeQuietly(socket);
     }
@@ -192,6 +263,11 @@ public abstract class xMsgProxyDriver {
             return address.pubPort();
         }
 
+        @Override
+        public void configure(xMsgConnectionSetup setup) {
+            setOverflowPolicy(setup.sendHighWaterMark(), setup.overflowPolicy());
+        }
+
         @Override
         public boolean checkSubscription(String topic, long timeout) {
             throw new UnsupportedOperationException("PUB socket cannot subscribe");
@@ -210,6 +286,11 @@ public abstract class xMsgProxyDriver {
             return address.subPort();
         }
 
+        @Override
+        public void configure(xMsgConnectionSetup setup) {
+            socket.setRcvHWM(setup.receiveHighWaterMark());
+        }
+
         @Override
         public boolean checkConnection(long timeout) {
             return true;
@@ -26,6 +26,11 @@ import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -57,6 +62,39 @@ public final class ThreadUtils {
                                  new DefaultThreadFactory(namePrefix));
     }
 
+    /**
+     * A work-stealing pool in FIFO mode that reports uncaught exceptions.
+     */
+    public static ExecutorService newForkJoinPool(int parallelism, String namePrefix) {
+        return new ForkJoinPool(parallelism,
+                                new ForkJoinThreadFactory(namePrefix),
+                                (t, e) -> e.printStackTrace(),
+                                true);
+    }
+
+    /**
+     * An executor that starts a new virtual thread for each task.
+     * Virtual threads are created by reflection, since the code targets
+     * older JVMs.
+     *
+     * @throws UnsupportedOperationException if the JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                                  .invoke(builder, namePrefix + "-vthread-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory")
+                                                                .invoke(builder);
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads are not supported", e);
+        }
+    }
+
     /**
      * A thread pool executor that prints the stackTrace of uncaught exceptions.
      */
@@ -91,6 +129,27 @@ public final class ThreadUtils {
         }
     }
 
+    /**
+     * A fork-join pool factory with custom thread names.
+     */
+    private static final class ForkJoinThreadFactory implements ForkJoinWorkerThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        private ForkJoinThreadFactory(String name) {
+            namePrefix = name + "-fjthread-";
+        }
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                                                 .newThread(pool);
+            t.setName(namePrefix + threadNumber.getAndIncrement());
+            return t;
+        }
+    }
+
     /**
      * A thread pool factory with custom thread names.
      */
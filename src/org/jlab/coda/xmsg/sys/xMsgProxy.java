@@ -61,6 +61,11 @@ import joptsimple.OptionSpec;
  * The proxy simplifies the dynamic connection problems. All xMsg actors
  * (publishers and subscribers) connect to the proxy, instead of to each other.
  * It becomes trivial to add more subscribers or publishers.
+ * <p>
+ * By default the proxy queues the messages for slow subscribers without limit.
+ * A proxy created with a high-water mark drops the new messages for a
+ * subscriber once that many messages are queued for it, and stops reading
+ * from a publisher once that many messages from it are pending.
  *
  * @version 2.x
  */
@@ -68,6 +73,7 @@ public class xMsgProxy {
 
     private final xMsgProxyAddress addr;
     private final xMsgContext ctx;
+    private final int highWaterMark;
 
     private final Thread proxy;
     private final Thread controller;
@@ -84,6 +90,10 @@ public class xMsgProxy {
                     .withRequiredArg()
                     .ofType(Integer.class)
                     .defaultsTo(xMsgConstants.DEFAULT_PORT);
+            OptionSpec<Integer> hwmSpec = parser.accepts("hwm")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(0);
             parser.accepts("verbose");
             parser.acceptsAll(asList("h", "help")).forHelp();
             OptionSet options = parser.parse(args);
@@ -97,9 +107,10 @@ public class xMsgProxy {
 
             String host = options.valueOf(hostSpec);
             int port = options.valueOf(portSpec);
+            int hwm = options.valueOf(hwmSpec);
             xMsgProxyAddress address = new xMsgProxyAddress(host, port);
 
-            xMsgProxy proxy = new xMsgProxy(xMsgContext.getInstance(), address);
+            xMsgProxy proxy = new xMsgProxy(xMsgContext.getInstance(), address, hwm);
             if (options.has("verbose")) {
                 proxy.verbose();
             }
@@ -124,6 +135,7 @@ public class xMsgProxy {
         out.printf("usage: jx_proxy [options]%n%n  Options:%n");
         out.printf("  %-22s  %s%n", "-host <hostname>", "use the given hostname");
         out.printf("  %-22s  %s%n", "-port <port>", "use the given port");
+        out.printf("  %-22s  %s%n", "-hwm <messages>", "limit the queued messages per peer");
         out.printf("  %-22s  %s%n", "-verbose", "print debug information");
     }
 
@@ -146,8 +158,28 @@ public class xMsgProxy {
      * @throws xMsgException if the address is already in use
      */
     public xMsgProxy(xMsgContext context, xMsgProxyAddress address) throws xMsgException {
+        this(context, address, 0);
+    }
+
+    /**
+     * Construct the proxy with the given local address,
+     * limiting the number of messages queued for every publisher and
+     * subscriber connected to the proxy.
+     *
+     * @param context the context to handle the proxy sockets
+     * @param address the local address
+     * @param highWaterMark the maximum number of queued messages per
+     *                      connection (zero means no limit)
+     * @throws xMsgException if the address is already in use
+     */
+    public xMsgProxy(xMsgContext context, xMsgProxyAddress address, int highWaterMark)
+            throws xMsgException {
+        if (highWaterMark < 0) {
+            throw new IllegalArgumentException("invalid high-water mark: " + highWaterMark);
+        }
         ctx = context;
         addr = address;
+        this.highWaterMark = highWaterMark;
 
         Proxy proxyTask = null;
         Controller controllerTask = null;
@@ -235,6 +267,8 @@ public class xMsgProxy {
             try {
                 in = factory.createSocket(ZMQ.XSUB);
                 out = factory.createSocket(ZMQ.XPUB);
+                in.setRcvHWM(highWaterMark);
+                out.setSndHWM(highWaterMark);
                 factory.bindSocket(in, addr.pubPort());
                 factory.bindSocket(out, addr.subPort());
             } catch (Exception e) {
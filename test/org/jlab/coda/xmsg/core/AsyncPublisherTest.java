@@ -0,0 +1,294 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgConnectionSetup;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncPublisherTest {
+
+    private xMsgProxyDriver driver;
+    private ConnectionManager manager;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        driver = mock(xMsgProxyDriver.class);
+        when(driver.send(any(byte[].class), any(byte[].class), any(byte[].class)))
+                .thenReturn(true);
+    }
+
+    @Test
+    public void publishFromMultipleThreads() throws Exception {
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder());
+        publisher.start();
+
+        int numThreads = 4;
+        int numMessages = 500;
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            pool.submit(() -> {
+                for (int j = 0; j < numMessages; j++) {
+                    CompletableFuture<Void> f = publisher.publish(newMessage());
+                    synchronized (futures) {
+                        futures.add(f);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                         .get(10, TimeUnit.SECONDS);
+        publisher.stop(0);
+
+        assertThat(futures.size(), is(numThreads * numMessages));
+        verify(driver, times(numThreads * numMessages))
+                .send(any(byte[].class), any(byte[].class), any(byte[].class));
+        verify(driver).close(eq(0));
+    }
+
+    @Test
+    public void failedSendCompletesExceptionally() throws Exception {
+        doThrow(new ZMQException("test", ZMQ.Error.EFSM.getCode()))
+                .when(driver).send(any(byte[].class), any(byte[].class), any(byte[].class));
+
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder());
+        publisher.start();
+
+        CompletableFuture<Void> future = publisher.publish(newMessage());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> future.get(10, TimeUnit.SECONDS));
+
+        assertThat(e.getCause(), instanceOf(xMsgException.class));
+
+        publisher.stop(0);
+    }
+
+    @Test
+    public void publishAfterStopCompletesExceptionally() throws Exception {
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder());
+        publisher.start();
+        publisher.stop(0);
+
+        CompletableFuture<Void> future = publisher.publish(newMessage());
+
+        assertThat(future.isCompletedExceptionally(), is(true));
+    }
+
+    @Test
+    public void droppedSendIsCounted() throws Exception {
+        when(driver.send(any(byte[].class), any(byte[].class), any(byte[].class)))
+                .thenReturn(false);
+
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder());
+        publisher.start();
+
+        CompletableFuture<Void> future = publisher.publish(newMessage());
+        assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+
+        publisher.stop(0);
+
+        assertThat(manager.droppedMessages(), is(1L));
+    }
+
+    @Test
+    public void fullQueueDropsOldestMessage() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(driver.send(any(byte[].class), any(byte[].class), any(byte[].class)))
+                .thenAnswer(i -> {
+                    sending.countDown();
+                    release.await();
+                    return true;
+                });
+
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder()
+                .withSendHighWaterMark(2)
+                .withOverflowPolicy(xMsgOverflowPolicy.DROP_OLDEST));
+        publisher.start();
+
+        CompletableFuture<Void> first = publisher.publish(newMessage());
+        sending.await();
+
+        CompletableFuture<Void> second = publisher.publish(newMessage());
+        CompletableFuture<Void> third = publisher.publish(newMessage());
+        CompletableFuture<Void> fourth = publisher.publish(newMessage());
+
+        assertThat(second.isCompletedExceptionally(), is(true));
+        assertThat(manager.droppedMessages(), is(1L));
+
+        release.countDown();
+        CompletableFuture.allOf(first, third, fourth).get(10, TimeUnit.SECONDS);
+
+        publisher.stop(0);
+    }
+
+    @Test
+    public void fullQueueFailsNewMessage() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(driver.send(any(byte[].class), any(byte[].class), any(byte[].class)))
+                .thenAnswer(i -> {
+                    sending.countDown();
+                    release.await();
+                    return true;
+                });
+
+        AsyncPublisher publisher = newPublisher(xMsgConnectionSetup.newBuilder()
+                .withSendHighWaterMark(1)
+                .withOverflowPolicy(xMsgOverflowPolicy.FAIL));
+        publisher.start();
+
+        CompletableFuture<Void> first = publisher.publish(newMessage());
+        sending.await();
+
+        CompletableFuture<Void> second = publisher.publish(newMessage());
+        CompletableFuture<Void> third = publisher.publish(newMessage());
+
+        assertThat(second.isCompletedExceptionally(), is(false));
+        assertThat(third.isCompletedExceptionally(), is(true));
+        assertThat(manager.droppedMessages(), is(0L));
+
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+
+        publisher.stop(0);
+    }
+
+    @Test
+    public void batchMessagesWithSameTopic() throws Exception {
+        int msgSize = newMessage().encodeMetaData().length + newMessage().getDataSize();
+        manager = new ConnectionManager(mock(xMsgConnectionFactory.class),
+                                        xMsgConnectionSetup.newBuilder().build());
+        AsyncPublisher publisher = new AsyncPublisher("test-pub", manager, driver,
+                                                      3 * msgSize, 10_000_000);
+        when(driver.sendBatchTopic(any(byte[].class))).thenReturn(true);
+        publisher.start();
+
+        CompletableFuture<Void> f1 = publisher.publish(newMessage());
+        CompletableFuture<Void> f2 = publisher.publish(newMessage());
+        CompletableFuture<Void> f3 = publisher.publish(newMessage());
+
+        CompletableFuture.allOf(f1, f2, f3).get(10, TimeUnit.SECONDS);
+        publisher.stop(0);
+
+        verify(driver, times(1)).sendBatchTopic(any(byte[].class));
+        verify(driver, times(2)).sendBatchPart(any(byte[].class), any(byte[].class), eq(false));
+        verify(driver, times(1)).sendBatchPart(any(byte[].class), any(byte[].class), eq(true));
+        verify(driver, times(0)).send(any(byte[].class), any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    public void batchReceivedCompressedMessagesWithoutDecoding() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .withThreshold(0)
+                                                     .build();
+        xMsgMessage compressed = compression.compress(
+                new xMsgMessage(xMsgTopic.wrap("writer:scifi:book"),
+                                "test/binary",
+                                new byte[1000]));
+        byte[] metaData = compressed.encodeMetaData();
+        byte[] data = compressed.getData();
+
+        manager = new ConnectionManager(mock(xMsgConnectionFactory.class),
+                                        xMsgConnectionSetup.newBuilder().build());
+        AsyncPublisher publisher = new AsyncPublisher("test-pub", manager, driver,
+                                                      2 * (metaData.length + data.length),
+                                                      10_000_000);
+        when(driver.sendBatchTopic(any(byte[].class))).thenReturn(true);
+        publisher.start();
+
+        xMsgMessage r1 = receive(compressed);
+        xMsgMessage r2 = receive(compressed);
+        CompletableFuture<Void> f1 = publisher.publish(r1);
+        CompletableFuture<Void> f2 = publisher.publish(r2);
+
+        CompletableFuture.allOf(f1, f2).get(10, TimeUnit.SECONDS);
+        publisher.stop(0);
+
+        ArgumentCaptor<byte[]> metaCaptor = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(driver, times(2)).sendBatchPart(metaCaptor.capture(),
+                                               dataCaptor.capture(),
+                                               anyBoolean());
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(metaCaptor.getAllValues().get(i), is(metaData));
+            assertThat(dataCaptor.getAllValues().get(i), is(data));
+        }
+        assertThat(r1.getRawData(), is(data));
+    }
+
+    private static xMsgMessage receive(xMsgMessage msg) throws xMsgException {
+        ZMsg zmsg = new ZMsg();
+        zmsg.add(msg.encodeTopic());
+        zmsg.add(msg.encodeMetaData());
+        zmsg.add(msg.getData());
+        return new xMsgMessage(zmsg);
+    }
+
+    private AsyncPublisher newPublisher(xMsgConnectionSetup.Builder setup) {
+        manager = new ConnectionManager(mock(xMsgConnectionFactory.class), setup.build());
+        return new AsyncPublisher("test-pub", manager, driver);
+    }
+
+    private static xMsgMessage newMessage() {
+        return new xMsgMessage(xMsgTopic.wrap("writer:scifi:book"),
+                               "test/binary",
+                               new byte[] {0x1, 0x2, 0x3});
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class CallbackQueueTest {
+
+    private ThreadPoolExecutor executor;
+    private CountDownLatch blocker;
+    private List<Integer> results;
+
+    @BeforeEach
+    public void setup() {
+        executor = ThreadUtils.newThreadPool(1, "test", new LinkedBlockingQueue<>());
+        blocker = new CountDownLatch(1);
+        results = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void unboundedQueueRunsAllCallbacks() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 0, xMsgCallbackPolicy.DROP_NEWEST);
+
+        startBlocked(queue);
+        for (int i = 1; i <= 100; i++) {
+            queue.execute(task(i));
+        }
+        assertThat(queue.size(), is(100));
+
+        release();
+
+        assertThat(results.size(), is(100));
+        assertThat(queue.size(), is(0));
+        assertThat(queue.dropped(), is(0L));
+    }
+
+
+    @Test
+    public void dropNewestWhenFull() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.DROP_NEWEST);
+
+        startBlocked(queue);
+        for (int i = 1; i <= 4; i++) {
+            queue.execute(task(i));
+        }
+        release();
+
+        assertThat(results, contains(1, 2));
+        assertThat(queue.dropped(), is(2L));
+    }
+
+
+    @Test
+    public void dropOldestWhenFull() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.DROP_OLDEST);
+
+        startBlocked(queue);
+        for (int i = 1; i <= 4; i++) {
+            queue.execute(task(i));
+        }
+        release();
+
+        assertThat(results, contains(3, 4));
+        assertThat(queue.dropped(), is(2L));
+    }
+
+
+    @Test
+    public void dropOldestDoesNotGrowExecutorQueue() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.DROP_OLDEST);
+
+        startBlocked(queue);
+        for (int i = 1; i <= 1000; i++) {
+            queue.execute(task(i));
+        }
+        assertThat(executor.getQueue().size(), is(0));
+
+        release();
+
+        assertThat(results, contains(999, 1000));
+        assertThat(queue.dropped(), is(998L));
+    }
+
+
+    @Test
+    public void callerRunsWhenFull() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.CALLER_RUNS);
+
+        startBlocked(queue);
+        for (int i = 1; i <= 4; i++) {
+            queue.execute(task(i));
+        }
+        assertThat(results, contains(3, 4));
+
+        release();
+
+        assertThat(results, contains(3, 4, 1, 2));
+        assertThat(queue.callerRuns(), is(2L));
+    }
+
+
+    @Test
+    public void blockWhenFull() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.BLOCK);
+
+        startBlocked(queue);
+        queue.execute(task(1));
+        queue.execute(task(2));
+
+        CountDownLatch published = new CountDownLatch(1);
+        Thread receiver = ThreadUtils.newThread("receiver", () -> {
+            queue.execute(task(3));
+            published.countDown();
+        });
+        receiver.start();
+
+        assertThat(published.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        release();
+        receiver.join();
+
+        assertThat(results, contains(1, 2, 3));
+        assertThat(queue.dropped(), is(0L));
+    }
+
+
+    @Test
+    public void rejectAfterShutdown() throws Exception {
+        CallbackQueue queue = new CallbackQueue(executor, 1, 2, xMsgCallbackPolicy.BLOCK);
+
+        executor.shutdown();
+        queue.execute(task(1));
+
+        assertThat(queue.rejected(), is(1L));
+        assertThat(queue.size(), is(0));
+    }
+
+
+    private void startBlocked(CallbackQueue queue) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        queue.execute(() -> {
+            started.countDown();
+            waitBlocker();
+        });
+        started.await();
+    }
+
+    private void release() throws InterruptedException {
+        blocker.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void waitBlocker() {
+        try {
+            blocker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Runnable task(int value) {
+        return () -> results.add(value);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.CountDownLatch;
+
+public class CommandPipeTest {
+
+    @Test
+    public void awaitReturnsWhenCommandIsExecuted() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread owner = xMsgUtil.newThread("owner", () -> {
+            xMsgUtil.sleep(50);
+            done.countDown();
+            xMsgUtil.sleep(500);
+        });
+        owner.start();
+
+        assertThat(CommandPipe.await(done, owner), is(true));
+
+        owner.join();
+    }
+
+
+    @Test
+    public void awaitGivesUpWhenOwnerTerminates() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread owner = xMsgUtil.newThread("owner", () -> xMsgUtil.sleep(50));
+        owner.start();
+
+        assertThat(CommandPipe.await(done, owner), is(false));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class KeyedExecutorTest {
+
+    private static final int LANES = 4;
+    private static final int KEYS = 10;
+    private static final int TASKS = 1000;
+
+    private KeyedExecutor executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = new KeyedExecutor("test", LANES, 0, xMsgCallbackPolicy.BLOCK);
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.lanes().forEach(ExecutorService::shutdownNow);
+    }
+
+
+    @Test
+    public void sameKeyUsesSameLane() throws Exception {
+        xMsgTopic topic = xMsgTopic.wrap("writer:scifi:book");
+
+        assertThat(executor.lane(topic), is(executor.lane(xMsgTopic.wrap("writer:scifi:book"))));
+        assertThat(executor.lane(null), is(0));
+        assertThat(executor.lanes().size(), is(LANES));
+    }
+
+
+    @Test
+    public void tasksWithSameKeyRunInOrder() throws Exception {
+        Map<String, List<Integer>> results = new ConcurrentHashMap<>();
+        Map<String, String> threads = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(KEYS * TASKS);
+
+        for (int i = 0; i < TASKS; i++) {
+            for (int k = 0; k < KEYS; k++) {
+                String key = "key" + k;
+                int value = i;
+                executor.execute(key, () -> {
+                    if (ThreadLocalRandom.current().nextInt(100) == 0) {
+                        Thread.yield();
+                    }
+                    results.computeIfAbsent(key, e -> new ArrayList<>()).add(value);
+                    threads.merge(key, Thread.currentThread().getName(),
+                                  (a, b) -> a.equals(b) ? a : "many");
+                    done.countDown();
+                });
+            }
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        for (int k = 0; k < KEYS; k++) {
+            String key = "key" + k;
+            List<Integer> values = results.get(key);
+            assertThat(values.size(), is(TASKS));
+            for (int i = 0; i < TASKS; i++) {
+                assertThat(values.get(i), is(i));
+            }
+            assertThat(threads.get(key), is("test-lane-" + executor.lane(key) + "-thread-1"));
+        }
+    }
+}
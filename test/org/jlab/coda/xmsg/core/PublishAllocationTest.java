@@ -0,0 +1,144 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
+import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
+import org.jlab.coda.xmsg.net.xMsgContext;
+import org.jlab.coda.xmsg.net.xMsgProxyAddress;
+import org.jlab.coda.xmsg.net.xMsgSocketFactory;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQ.Socket;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the publish hot path does not allocate memory once warmed up.
+ * <p>
+ * 0MQ itself allocates a message object for every frame it sends,
+ * so the allocations of xMsg are compared against sending the same frames
+ * directly through a raw socket.
+ * <p>
+ * The measured allocations depend on the JIT, so a few bytes per message are
+ * tolerated, which is still less than the smallest object on the heap.
+ */
+@Tag("integration")
+public class PublishAllocationTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int MESSAGES = 100_000;
+    private static final long MAX_ALLOCATED = 8L * MESSAGES;
+
+    private final xMsgTopic topic = xMsgTopic.wrap("writer:scifi:book");
+    private final byte[] data = new byte[128];
+
+    private xMsgContext context;
+    private xMsgSocketFactory factory;
+    private xMsgProxyDriver driver;
+    private Socket rawSocket;
+    private xMsgConnection connection;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        context = xMsgContext.newContext();
+        factory = new xMsgSocketFactory(context.getContext());
+        driver = xMsgProxyDriver.publisher(new xMsgProxyAddress(), factory);
+        rawSocket = factory.createSocket(ZMQ.PUB);
+
+        ConnectionManager manager = new ConnectionManager(mock(xMsgConnectionFactory.class));
+        connection = new xMsgConnection(manager, driver);
+    }
+
+    @AfterEach
+    public void teardown() {
+        driver.close(0);
+        factory.setLinger(rawSocket, 0);
+        factory.closeQuietly(rawSocket);
+        context.destroy();
+    }
+
+    @Test
+    public void publishReusedMessageWithoutAllocations() throws Exception {
+        xMsg actor = new xMsg("alloc", xMsgSetup.newBuilder().build(),
+                              mock(xMsgConnectionFactory.class));
+        try {
+            xMsgMessage msg = new xMsgMessage(topic, "binary/bytes", data);
+
+            long xmsgBytes = allocatedBytes(() -> actor.publish(connection, msg));
+            long rawBytes = allocatedBytes(() -> rawSend(msg.encodeMetaData()));
+
+            assertThat(xmsgBytes - rawBytes, lessThan(MAX_ALLOCATED));
+        } finally {
+            actor.close();
+        }
+    }
+
+    @Test
+    public void publishWithPublisherWithoutAllocations() throws Exception {
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder().setDataType("binary/bytes");
+        xMsgPublisher publisher = new xMsgPublisher(connection, topic, meta);
+        byte[] metaDataFrame = publisher.getMetaData().toByteArray();
+
+        long xmsgBytes = allocatedBytes(() -> publisher.publish(data));
+        long rawBytes = allocatedBytes(() -> rawSend(metaDataFrame));
+
+        assertThat(xmsgBytes - rawBytes, lessThan(MAX_ALLOCATED));
+    }
+
+    private void rawSend(byte[] metaDataFrame) {
+        rawSocket.sendMore(topic.toBytes());
+        rawSocket.sendMore(metaDataFrame);
+        rawSocket.send(data);
+    }
+
+    private static long allocatedBytes(Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+        long start = threadAllocatedBytes();
+        for (int i = 0; i < MESSAGES; i++) {
+            task.run();
+        }
+        return threadAllocatedBytes() - start;
+    }
+
+    private static long threadAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zeromq.ZMsg;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+public class ResponseListenerTest {
+
+    private static final String REPLY_TO = "ret:test:1000000";
+
+    private ResponseListener listener;
+
+    @BeforeEach
+    public void setup() {
+        listener = new ResponseListener("test", mock(xMsgConnectionFactory.class));
+    }
+
+
+    @Test
+    public void responseCompletesWaitingRequest() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+
+        Thread replier = ThreadUtils.newThread("replier", () -> {
+            try {
+                listener.handle(responseMessage(REPLY_TO));
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        replier.start();
+
+        xMsgMessage msg = listener.waitResponse(response, 5000);
+        replier.join();
+
+        assertThat(msg.getTopic().toString(), is(REPLY_TO));
+        assertThat(msg.getMimeType(), is("test/response"));
+    }
+
+
+    @Test
+    public void responseReceivedBeforeWaiting() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+        listener.handle(responseMessage(REPLY_TO));
+
+        xMsgMessage msg = listener.waitResponse(response, 0);
+
+        assertThat(msg.getTopic().toString(), is(REPLY_TO));
+    }
+
+
+    @Test
+    public void timeoutWhenNoResponse() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+
+        assertThrows(TimeoutException.class, () -> listener.waitResponse(response, 10));
+    }
+
+
+    @Test
+    public void discardLateResponses() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+        listener.cancelResponse(REPLY_TO);
+
+        listener.handle(responseMessage(REPLY_TO));
+
+        assertThat(response.isDone(), is(false));
+    }
+
+
+    @Test
+    public void asyncResponsesCompleteInAnyOrder() throws Exception {
+        String replyTo1 = listener.newReplyTopic();
+        String replyTo2 = listener.newReplyTopic();
+        CompletableFuture<xMsgMessage> response1 = listener.expectResponse(replyTo1, 5000);
+        CompletableFuture<xMsgMessage> response2 = listener.expectResponse(replyTo2, 5000);
+
+        listener.handle(responseMessage(replyTo2));
+        listener.handle(responseMessage(replyTo1));
+
+        assertThat(response1.get().getTopic().toString(), is(replyTo1));
+        assertThat(response2.get().getTopic().toString(), is(replyTo2));
+        assertThat(listener.pendingResponses(), is(0));
+    }
+
+
+    @Test
+    public void asyncRequestExpiresWhenNoResponse() throws Exception {
+        String replyTo = listener.newReplyTopic();
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(replyTo, 10);
+
+        ExecutionException e = assertThrows(ExecutionException.class, response::get);
+
+        assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        assertThat(listener.pendingResponses(), is(0));
+
+        listener.handle(responseMessage(replyTo));
+    }
+
+
+    @Test
+    public void gatherCompletesWithFirstResponses() throws Exception {
+        String replyTo = listener.newReplyTopic();
+        CompletableFuture<List<xMsgMessage>> result = listener.expectResponses(replyTo, 2, 5000);
+
+        listener.handle(responseMessage(replyTo));
+        assertThat(result.isDone(), is(false));
+
+        listener.handle(responseMessage(replyTo));
+        listener.handle(responseMessage(replyTo));
+
+        assertThat(result.get().size(), is(2));
+        assertThat(listener.pendingResponses(), is(0));
+    }
+
+
+    @Test
+    public void gatherCompletesWithReceivedResponsesOnDeadline() throws Exception {
+        String replyTo = listener.newReplyTopic();
+        CompletableFuture<List<xMsgMessage>> result = listener.expectResponses(replyTo, 3, 50);
+
+        listener.handle(responseMessage(replyTo));
+
+        assertThat(result.get().size(), is(1));
+        assertThat(listener.pendingResponses(), is(0));
+    }
+
+
+    @Test
+    public void countLateResponses() throws Exception {
+        String replyTo = listener.newReplyTopic();
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(replyTo, 10);
+        CompletableFuture<List<xMsgMessage>> result = listener.expectResponses(REPLY_TO, 1, 1000);
+
+        assertThrows(ExecutionException.class, response::get);
+
+        listener.handle(responseMessage(replyTo));
+        listener.handle(responseMessage(REPLY_TO));
+        listener.handle(responseMessage(REPLY_TO));
+
+        assertThat(result.get().size(), is(1));
+        assertThat(listener.lateResponses(), is(2L));
+        assertThat(listener.pendingResponses(), is(0));
+    }
+
+
+    @Test
+    public void ignoreResponsesToOtherTopics() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+
+        listener.handle(responseMessage("ret:other:1000000"));
+        listener.handle(responseMessage("ret:test:invalid"));
+
+        assertThat(response.isDone(), is(false));
+        assertThat(listener.pendingResponses(), is(1));
+    }
+
+
+    @Test
+    public void stopFailsPendingRequests() throws Exception {
+        CompletableFuture<xMsgMessage> response = listener.expectResponse(REPLY_TO);
+
+        listener.stop();
+
+        assertThat(response.isCompletedExceptionally(), is(true));
+        assertThat(listener.pendingResponses(), is(0));
+    }
+
+
+    private static ZMsg responseMessage(String topic) {
+        ZMsg msg = new ZMsg();
+        msg.add(topic);
+        msg.add(xMsgMeta.newBuilder().setDataType("test/response").build().toByteArray());
+        msg.add(new byte[] {0x1});
+        return msg;
+    }
+}
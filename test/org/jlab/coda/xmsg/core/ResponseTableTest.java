@@ -0,0 +1,97 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class ResponseTableTest {
+
+    private final ResponseTable<CompletableFuture<xMsgMessage>> table =
+            new ResponseTable<>();
+
+
+    @Test
+    public void removeReturnsStoredRequest() throws Exception {
+        CompletableFuture<xMsgMessage> response = new CompletableFuture<>();
+        table.put(1000000, response);
+
+        assertThat(table.size(), is(1));
+        assertThat(table.remove(1000000), is(sameInstance(response)));
+        assertThat(table.remove(1000000), is(nullValue()));
+        assertThat(table.size(), is(0));
+    }
+
+
+    @Test
+    public void removeOnlyMatchingRequest() throws Exception {
+        CompletableFuture<xMsgMessage> response = new CompletableFuture<>();
+        table.put(2000000, response);
+
+        assertThat(table.remove(2000000, new CompletableFuture<>()), is(false));
+        assertThat(table.remove(2000000, response), is(true));
+        assertThat(table.size(), is(0));
+    }
+
+
+    @Test
+    public void storeManyRequests() throws Exception {
+        int size = 100_000;
+        List<CompletableFuture<xMsgMessage>> responses = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            CompletableFuture<xMsgMessage> response = new CompletableFuture<>();
+            responses.add(response);
+            table.put(2_000_000 + i, response);
+        }
+
+        assertThat(table.size(), is(size));
+
+        for (int i = 0; i < size; i += 2) {
+            assertThat(table.remove(2_000_000 + i), is(sameInstance(responses.get(i))));
+        }
+        for (int i = 1; i < size; i += 2) {
+            assertThat(table.remove(2_000_000 + i), is(sameInstance(responses.get(i))));
+        }
+
+        assertThat(table.size(), is(0));
+    }
+
+
+    @Test
+    public void clearReturnsAllRequests() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            table.put(1_000_000 + i, new CompletableFuture<>());
+        }
+
+        assertThat(table.clear().size(), is(100));
+        assertThat(table.size(), is(0));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.util.ThreadUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingDispatcherTest {
+
+    private final xMsgTopic topic = xMsgTopic.wrap("test_topic");
+
+    private ExecutorService executor;
+    private CountDownLatch blocker;
+    private List<Integer> results;
+
+    @BeforeEach
+    public void setup() {
+        executor = ThreadUtils.newThreadPool(4, "test", new LinkedBlockingQueue<>());
+        blocker = new CountDownLatch(1);
+        results = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void capacityIsRoundedToPowerOfTwo() throws Exception {
+        RingDispatcher ring = newRing(1, 1000, xMsgCallbackPolicy.BLOCK);
+
+        assertThat(ring.capacity(), is(1024));
+    }
+
+
+    @Test
+    public void dropOldestIsNotSupported() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> newRing(1, 16, xMsgCallbackPolicy.DROP_OLDEST));
+    }
+
+
+    @Test
+    public void workersRunAllCallbacks() throws Exception {
+        final int producers = 2;
+        final int messages = 10000;
+
+        RingDispatcher ring = newRing(4, 16, xMsgCallbackPolicy.BLOCK);
+        ring.start();
+
+        AtomicInteger counter = new AtomicInteger();
+        AtomicLong sum = new AtomicLong();
+        xMsgCallBack callback = msg -> {
+            counter.incrementAndGet();
+            sum.addAndGet(xMsgMessage.parseData(msg, Integer.class));
+        };
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = ThreadUtils.newThread("producer-" + p, () -> {
+                for (int i = 0; i < messages; i++) {
+                    ring.execute(callback, xMsgMessage.createFrom(topic, i));
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stop(ring);
+
+        assertThat(counter.get(), is(producers * messages));
+        assertThat(sum.get(), is(producers * 49995000L));
+        assertThat(ring.size(), is(0));
+    }
+
+
+    @Test
+    public void workersRunBatchCallbacks() throws Exception {
+        RingDispatcher ring = newRing(2, 16, xMsgCallbackPolicy.BLOCK);
+        ring.start();
+
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        xMsgBatchCallBack callback = msgs -> sizes.add(msgs.size());
+
+        ring.execute(callback, Arrays.asList(message(1), message(2)));
+        ring.execute(callback, Arrays.asList(message(3), message(4), message(5)));
+        stop(ring);
+
+        assertThat(sizes.stream().mapToInt(Integer::intValue).sum(), is(5));
+    }
+
+
+    @Test
+    public void blockWhenFull() throws Exception {
+        RingDispatcher ring = newRing(1, 2, xMsgCallbackPolicy.BLOCK);
+        ring.start();
+
+        startBlocked(ring);
+        ring.execute(record(), message(1));
+
+        CountDownLatch published = new CountDownLatch(1);
+        Thread receiver = ThreadUtils.newThread("receiver", () -> {
+            ring.execute(record(), message(2));
+            published.countDown();
+        });
+        receiver.start();
+
+        assertThat(published.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        blocker.countDown();
+        receiver.join();
+        stop(ring);
+
+        assertThat(results, contains(1, 2));
+        assertThat(ring.dropped(), is(0L));
+    }
+
+
+    @Test
+    public void dropNewestWhenFull() throws Exception {
+        RingDispatcher ring = newRing(1, 2, xMsgCallbackPolicy.DROP_NEWEST);
+        ring.start();
+
+        startBlocked(ring);
+        for (int i = 1; i <= 3; i++) {
+            ring.execute(record(), message(i));
+        }
+        blocker.countDown();
+        stop(ring);
+
+        assertThat(results, contains(1));
+        assertThat(ring.dropped(), is(2L));
+    }
+
+
+    @Test
+    public void callerRunsWhenFull() throws Exception {
+        RingDispatcher ring = newRing(1, 2, xMsgCallbackPolicy.CALLER_RUNS);
+        ring.start();
+
+        startBlocked(ring);
+        for (int i = 1; i <= 3; i++) {
+            ring.execute(record(), message(i));
+        }
+        assertThat(results, contains(2, 3));
+
+        blocker.countDown();
+        stop(ring);
+
+        assertThat(results, contains(2, 3, 1));
+        assertThat(ring.callerRuns(), is(2L));
+    }
+
+
+    @Test
+    public void rejectAfterStop() throws Exception {
+        RingDispatcher ring = newRing(1, 2, xMsgCallbackPolicy.BLOCK);
+        ring.start();
+        stop(ring);
+
+        ring.execute(record(), message(1));
+
+        assertThat(ring.rejected(), is(1L));
+        assertThat(results.isEmpty(), is(true));
+    }
+
+
+    private RingDispatcher newRing(int workers, int capacity, xMsgCallbackPolicy policy) {
+        return new RingDispatcher(executor, workers, capacity, policy,
+                                  xMsgConstants.DEFAULT_RING_BATCH,
+                                  xMsgWaitStrategy.blocking());
+    }
+
+    private void startBlocked(RingDispatcher ring) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        ring.execute(msg -> {
+            started.countDown();
+            waitBlocker();
+        }, message(0));
+        started.await();
+    }
+
+    private void stop(RingDispatcher ring) throws InterruptedException {
+        ring.stop();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void waitBlocker() {
+        try {
+            blocker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private xMsgMessage message(int value) {
+        return xMsgMessage.createFrom(topic, value);
+    }
+
+    private xMsgCallBack record() {
+        return msg -> results.add(xMsgMessage.parseData(msg, Integer.class));
+    }
+}
@@ -29,15 +29,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -81,6 +90,37 @@ public class SubscriptionsTest {
     }
 
 
+    @Test
+    public void addAndRemoveTopicsOfRunningSubscription() throws Exception {
+        xMsgTopic topicA = xMsgTopic.wrap("topic_a");
+        xMsgTopic topicB = xMsgTopic.wrap("topic_b");
+        List<xMsgTopic> received = new CopyOnWriteArrayList<>();
+
+        try (xMsg actor = new xMsg("test");
+             xMsgConnection con = actor.getConnection()) {
+            xMsgSubscription subscription = actor.subscribe(topicA, msg ->
+                    received.add(msg.getTopic()));
+
+            subscription.addTopic(topicB);
+            subscription.removeTopic(topicA);
+            xMsgUtil.sleep(500);
+
+            for (int i = 0; i < 10; i++) {
+                actor.publish(con, xMsgMessage.createFrom(topicA, i));
+                actor.publish(con, xMsgMessage.createFrom(topicB, i));
+            }
+            xMsgUtil.sleep(500);
+
+            assertThat(subscription.getTopics(), contains(topicB));
+            assertThat(received.size(), is(10));
+            assertTrue(received.stream().allMatch(topicB::equals));
+
+            actor.unsubscribe(subscription);
+            assertThrows(IllegalStateException.class, () -> subscription.addTopic(topicA));
+        }
+    }
+
+
     @Test
     public void subscribeReceivesAllMessages() throws Exception {
         class Check {
@@ -135,6 +175,139 @@ public class SubscriptionsTest {
     }
 
 
+    @Test
+    public void pullSubscriptionTakesAllMessages() throws Exception {
+        final int n = 10000;
+        final int capacity = 100;
+
+        try (xMsg subscriber = new xMsg("test_subscriber")) {
+            xMsgTopic topic = xMsgTopic.wrap("test_topic");
+            xMsgPullSubscription sub = subscriber.subscribePull(topic, capacity);
+            xMsgUtil.sleep(100);
+
+            Thread pubThread = xMsgUtil.newThread("pub-thread", () -> {
+                try (xMsg actor = new xMsg("test_publisher");
+                     xMsgConnection con = actor.getConnection()) {
+                    for (int i = 0; i < n; i++) {
+                        actor.publish(con, xMsgMessage.createFrom(topic, i));
+                    }
+                } catch (xMsgException e) {
+                    e.printStackTrace();
+                }
+            });
+            pubThread.start();
+
+            long sum = 0;
+            int counter = 0;
+            List<xMsgMessage> msgs = new ArrayList<>();
+            while (counter < n) {
+                xMsgMessage first = sub.poll(10, TimeUnit.SECONDS);
+                if (first == null) {
+                    break;
+                }
+                msgs.add(first);
+                sub.drainTo(msgs, capacity);
+                for (xMsgMessage msg : msgs) {
+                    sum += xMsgMessage.parseData(msg, Integer.class);
+                }
+                counter += msgs.size();
+                msgs.clear();
+            }
+            pubThread.join();
+            subscriber.unsubscribe(sub);
+
+            assertThat(counter, is(n));
+            assertThat(sum, is(49995000L));
+            assertThat(sub.getDroppedMessages(), is(0L));
+        }
+    }
+
+
+    @Test
+    public void unsubscribeWakesUpBlockedTake() throws Exception {
+        try (xMsg subscriber = new xMsg("test_subscriber")) {
+            xMsgTopic topic = xMsgTopic.wrap("test_topic");
+            xMsgPullSubscription sub = subscriber.subscribePull(topic, 100);
+
+            CompletableFuture<xMsgMessage> taken = new CompletableFuture<>();
+            Thread consumer = xMsgUtil.newThread("consumer", () -> {
+                try {
+                    taken.complete(sub.take());
+                } catch (InterruptedException e) {
+                    taken.completeExceptionally(e);
+                }
+            });
+            consumer.start();
+            xMsgUtil.sleep(100);
+
+            subscriber.unsubscribe(sub);
+
+            assertThat(taken.get(5, TimeUnit.SECONDS), is(nullValue()));
+            consumer.join();
+        }
+    }
+
+
+    @Test
+    public void batchSubscribeReceivesAllMessages() throws Exception {
+        class Check {
+            static final int N = 10000;
+            static final long SUM_N = 49995000L;
+            static final int MAX_BATCH = 100;
+            AtomicInteger counter = new AtomicInteger();
+            AtomicLong sum = new AtomicLong();
+            AtomicInteger maxSize = new AtomicInteger();
+        }
+
+        final Check check = new Check();
+
+        Thread subThread = xMsgUtil.newThread("sub-thread", () -> {
+            try (xMsg actor = new xMsg("test_subscriber")) {
+                xMsgTopic topic = xMsgTopic.wrap("test_topic");
+                xMsgSubscription sub = actor.subscribe(topic, msgs -> {
+                    for (xMsgMessage msg : msgs) {
+                        int i = xMsgMessage.parseData(msg, Integer.class);
+                        check.sum.addAndGet(i);
+                    }
+                    check.counter.addAndGet(msgs.size());
+                    check.maxSize.accumulateAndGet(msgs.size(), Math::max);
+                }, Check.MAX_BATCH, 500);
+                int shutdownCounter = 0;
+                while (check.counter.get() < Check.N && shutdownCounter < 100) {
+                    shutdownCounter++;
+                    xMsgUtil.sleep(100);
+                }
+                actor.unsubscribe(sub);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        subThread.start();
+        xMsgUtil.sleep(100);
+
+        Thread pubThread = xMsgUtil.newThread("pub-thread", () -> {
+            try (xMsg actor = new xMsg("test_publisher");
+                 xMsgConnection con = actor.getConnection()) {
+                xMsgTopic topic = xMsgTopic.wrap("test_topic");
+                for (int i = 0; i < Check.N; i++) {
+                    xMsgMessage msg = xMsgMessage.createFrom(topic, i);
+                    actor.publish(con, msg);
+                }
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        pubThread.start();
+
+        subThread.join();
+        pubThread.join();
+
+        assertThat(check.counter.get(), is(Check.N));
+        assertThat(check.sum.get(), is(Check.SUM_N));
+        assertTrue(check.maxSize.get() <= Check.MAX_BATCH);
+    }
+
+
     @Test
     public void syncPublicationReceivesAllResponses() throws Exception {
         class Check {
@@ -180,6 +353,83 @@ public class SubscriptionsTest {
     }
 
 
+    @Test
+    public void scatterGatherCollectsResponsesOfAllSubscribers() throws Exception {
+        try (xMsg subActor = new xMsg("test_subscriber");
+             xMsg pubActor = new xMsg("test_publisher")) {
+            xMsgTopic topic = xMsgTopic.wrap("test_topic");
+            List<xMsgSubscription> subs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                final int id = i;
+                subs.add(subActor.subscribe(topic, msg -> {
+                    try {
+                        subActor.publish(xMsgMessage.createResponse(msg, id));
+                    } catch (xMsgException e) {
+                        e.printStackTrace();
+                    }
+                }));
+            }
+            xMsgUtil.sleep(100);
+
+            xMsgMessage all = xMsgMessage.createFrom(topic, 1);
+            List<xMsgMessage> allResponses = pubActor.scatterGather(all, 3, 1000).get();
+
+            xMsgMessage firstTwo = xMsgMessage.createFrom(topic, 2);
+            List<xMsgMessage> firstResponses = pubActor.scatterGather(firstTwo, 2, 1000).get();
+
+            xMsgMessage deadline = xMsgMessage.createFrom(topic, 3);
+            List<xMsgMessage> deadlineResponses =
+                    pubActor.scatterGather(deadline, Integer.MAX_VALUE, 200).get();
+
+            Set<Integer> ids = new HashSet<>();
+            for (xMsgMessage res : allResponses) {
+                ids.add(xMsgMessage.parseData(res, Integer.class));
+            }
+
+            assertThat(ids, is(new HashSet<>(Arrays.asList(0, 1, 2))));
+            assertThat(firstResponses.size(), is(2));
+            assertThat(deadlineResponses.size(), is(3));
+
+            subs.forEach(subActor::unsubscribe);
+        }
+    }
+
+
+    @Test
+    public void directRequestsReceiveAllResponses() throws Exception {
+        try (xMsg repActor = new xMsg("test_responder");
+             xMsg reqActor = new xMsg("test_requester")) {
+            xMsgResponder responder = repActor.startResponder(7781, req -> {
+                int data = xMsgMessage.parseData(req, Integer.class);
+                return xMsgMessage.createResponse(req, 2 * data);
+            });
+            xMsgTopic topic = xMsgTopic.wrap("test_topic");
+
+            long syncSum = 0;
+            for (int i = 0; i < 100; i++) {
+                xMsgMessage msg = xMsgMessage.createFrom(topic, i);
+                xMsgMessage res = reqActor.syncPublish(responder.getAddress(), msg, 1000);
+                syncSum += xMsgMessage.parseData(res, Integer.class);
+            }
+
+            List<CompletableFuture<xMsgMessage>> responses = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                xMsgMessage msg = xMsgMessage.createFrom(topic, i);
+                responses.add(reqActor.asyncPublish(responder.getAddress(), msg, 1000));
+            }
+            long asyncSum = 0;
+            for (CompletableFuture<xMsgMessage> res : responses) {
+                asyncSum += xMsgMessage.parseData(res.get(), Integer.class);
+            }
+
+            assertThat(syncSum, is(9900L));
+            assertThat(asyncSum, is(9900L));
+
+            repActor.stopResponder(responder);
+        }
+    }
+
+
     @Test
     public void syncPublicationThrowsOnTimeout() throws Exception {
         class Check {
@@ -278,4 +528,122 @@ public class SubscriptionsTest {
         assertThat(check.counter.get(), is(Check.N));
         assertThat(check.sum.get(), is(Check.SUM_N));
     }
+
+
+    @Test
+    public void sharedThreadsReceiveAllMessages() throws Exception {
+        class Check {
+            static final int TOPICS = 20;
+            static final int N = 10000;
+            static final long SUM_N = 49995000L;
+            AtomicInteger counter = new AtomicInteger();
+            AtomicLong sum = new AtomicLong();
+            List<xMsgSubscription> subs = new ArrayList<>();
+        }
+
+        final Check check = new Check();
+
+        xMsgSetup setup = xMsgSetup.newBuilder().withSubscriptionThreads(2).build();
+        Thread subThread = xMsgUtil.newThread("sub-thread", () -> {
+            try (xMsg actor = new xMsg("test_subscriber", setup)) {
+                for (int t = 0; t < Check.TOPICS; t++) {
+                    xMsgTopic topic = xMsgTopic.wrap(t + "_test_topic");
+                    check.subs.add(actor.subscribe(topic, msg -> {
+                        int i = xMsgMessage.parseData(msg, Integer.class);
+                        check.counter.incrementAndGet();
+                        check.sum.addAndGet(i);
+                    }));
+                }
+                int shutdownCounter = 0;
+                while (check.counter.get() < Check.N && shutdownCounter < 100) {
+                    shutdownCounter++;
+                    xMsgUtil.sleep(100);
+                }
+                check.subs.forEach(sub -> assertTrue(sub.isAlive()));
+                check.subs.forEach(actor::unsubscribe);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        subThread.start();
+        xMsgUtil.sleep(500);
+
+        Thread pubThread = xMsgUtil.newThread("pub-thread", () -> {
+            try (xMsg actor = new xMsg("test_publisher");
+                 xMsgConnection con = actor.getConnection()) {
+                for (int i = 0; i < Check.N; i++) {
+                    xMsgTopic topic = xMsgTopic.wrap((i % Check.TOPICS) + "_test_topic");
+                    actor.publish(con, xMsgMessage.createFrom(topic, i));
+                }
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        pubThread.start();
+
+        subThread.join();
+        pubThread.join();
+
+        assertThat(check.counter.get(), is(Check.N));
+        assertThat(check.sum.get(), is(Check.SUM_N));
+        check.subs.forEach(sub -> assertFalse(sub.isAlive()));
+    }
+
+
+    @Test
+    public void spinningSubscriptionDrainsAllMessages() throws Exception {
+        class Check {
+            static final int N = 10000;
+            static final long SUM_N = 49995000L;
+            AtomicInteger counter = new AtomicInteger();
+            AtomicLong sum = new AtomicLong();
+        }
+
+        final Check check = new Check();
+
+        xMsgSetup setup = xMsgSetup.newBuilder()
+                                   .withDrainLimit(8)
+                                   .withSubscriptionMode(xMsgCallbackMode.SINGLE_THREAD)
+                                   .build();
+        Thread subThread = xMsgUtil.newThread("sub-thread", () -> {
+            try (xMsg actor = new xMsg("test_subscriber", setup)) {
+                xMsgTopic topic = xMsgTopic.wrap("test_topic");
+                xMsgSubscription sub = actor.subscribe(topic, msg -> {
+                    int i = xMsgMessage.parseData(msg, Integer.class);
+                    check.counter.incrementAndGet();
+                    check.sum.addAndGet(i);
+                });
+                sub.setWaitStrategy(xMsgWaitStrategy.spinThenPark(1, TimeUnit.MILLISECONDS));
+                int shutdownCounter = 0;
+                while (check.counter.get() < Check.N && shutdownCounter < 100) {
+                    shutdownCounter++;
+                    xMsgUtil.sleep(100);
+                }
+                actor.unsubscribe(sub);
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        subThread.start();
+        xMsgUtil.sleep(500);
+
+        Thread pubThread = xMsgUtil.newThread("pub-thread", () -> {
+            try (xMsg actor = new xMsg("test_publisher");
+                 xMsgConnection con = actor.getConnection()) {
+                xMsgTopic topic = xMsgTopic.wrap("test_topic");
+                for (int i = 0; i < Check.N; i++) {
+                    actor.publish(con, xMsgMessage.createFrom(topic, i));
+                }
+            } catch (xMsgException e) {
+                e.printStackTrace();
+            }
+        });
+        pubThread.start();
+
+        subThread.join();
+        pubThread.join();
+
+        assertThat(check.counter.get(), is(Check.N));
+        assertThat(check.sum.get(), is(Check.SUM_N));
+    }
 }
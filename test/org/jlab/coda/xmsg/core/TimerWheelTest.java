@@ -0,0 +1,96 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerWheelTest {
+
+    private final TimerWheel timer = new TimerWheel("test-timer", 1, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    public void teardown() {
+        timer.stop();
+    }
+
+
+    @Test
+    public void expireAfterDelay() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        TimerWheel.Timeout timeout = timer.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(elapsed, is(greaterThanOrEqualTo(20L)));
+        assertThat(timeout.isExpired(), is(true));
+    }
+
+
+    @Test
+    public void expireAfterManyRounds() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+
+        timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+        timer.schedule(latch::countDown, 13, TimeUnit.MILLISECONDS);
+        timer.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+    }
+
+
+    @Test
+    public void cancelledTimeoutNeverExpires() throws Exception {
+        AtomicInteger expired = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TimerWheel.Timeout timeout = timer.schedule(expired::incrementAndGet,
+                                                    10, TimeUnit.MILLISECONDS);
+        timer.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+
+        assertThat(timeout.cancel(), is(true));
+        assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(timeout.cancel(), is(false));
+        assertThat(expired.get(), is(0));
+    }
+
+
+    @Test
+    public void scheduleFailsWhenStopped() throws Exception {
+        timer.stop();
+
+        assertThrows(IllegalStateException.class,
+                     () -> timer.schedule(() -> { }, 10, TimeUnit.MILLISECONDS));
+    }
+}
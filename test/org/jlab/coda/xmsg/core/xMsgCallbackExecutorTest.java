@@ -0,0 +1,116 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class xMsgCallbackExecutorTest {
+
+    private static final int TASKS = 200;
+
+    @Test
+    public void fixedThreadPoolRunsCallbacks() throws Exception {
+        Set<String> threads = runBlockingTasks(xMsgCallbackExecutor.fixedThreadPool(), 4);
+
+        assertThat(threads.size(), is(4));
+        threads.forEach(t -> assertThat(t, startsWith("actor-thread-")));
+    }
+
+
+    @Test
+    public void forkJoinPoolRunsCallbacks() throws Exception {
+        Set<String> threads = runBlockingTasks(xMsgCallbackExecutor.forkJoinPool(), 4);
+
+        threads.forEach(t -> assertThat(t, startsWith("actor-fjthread-")));
+    }
+
+
+    @Test
+    public void virtualThreadsRunAllCallbacksConcurrently() throws Exception {
+        assumeTrue(hasVirtualThreads(), "virtual threads are not supported");
+
+        // every task blocks until all tasks are running,
+        // which is only possible if each one got its own thread
+        ExecutorService executor = xMsgCallbackExecutor.virtualThreads().newExecutor("actor", 1);
+        CountDownLatch running = new CountDownLatch(TASKS);
+        CountDownLatch done = new CountDownLatch(TASKS);
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                executor.execute(() -> {
+                    running.countDown();
+                    try {
+                        if (running.await(5, TimeUnit.SECONDS)) {
+                            done.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    private static Set<String> runBlockingTasks(xMsgCallbackExecutor factory, int poolSize)
+            throws Exception {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = factory.newExecutor("actor", poolSize);
+        CountDownLatch done = new CountDownLatch(TASKS);
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                executor.execute(() -> {
+                    threads.add(Thread.currentThread().getName());
+                    xMsgUtil.sleep(1);
+                    done.countDown();
+                });
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdown();
+        }
+        return threads;
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
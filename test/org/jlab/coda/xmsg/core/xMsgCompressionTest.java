@@ -0,0 +1,178 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.excp.xMsgException;
+import org.junit.jupiter.api.Test;
+import org.zeromq.ZMsg;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class xMsgCompressionTest {
+
+    private final xMsgTopic topic = xMsgTopic.wrap("histo:detector:1");
+
+    @Test
+    public void deflateRoundTrip() throws Exception {
+        xMsgCodec codec = xMsgCodecs.get(xMsgCodecs.DEFLATE);
+        byte[] data = compressibleData(10000);
+
+        byte[] compressed = codec.compress(data);
+
+        assertThat(compressed.length, is(lessThan(data.length)));
+        assertThat(codec.decompress(compressed), is(data));
+    }
+
+    @Test
+    public void deflateRejectsInvalidData() throws Exception {
+        xMsgCodec codec = xMsgCodecs.get(xMsgCodecs.DEFLATE);
+        byte[] compressed = codec.compress(compressibleData(10000));
+
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        assertThrows(xMsgException.class, () -> codec.decompress(truncated));
+    }
+
+    @Test
+    public void compressMessageAboveThreshold() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .withThreshold(1000)
+                                                     .build();
+        xMsgMessage msg = new xMsgMessage(topic, "test/binary", compressibleData(10000));
+
+        xMsgMessage compressed = compression.compress(msg);
+
+        assertThat(compressed.getMetaData().getCompression(), is(xMsgCodecs.DEFLATE));
+        assertThat(compressed.getDataSize(), is(lessThan(msg.getDataSize())));
+        assertThat(msg.getMetaData().hasCompression(), is(false));
+    }
+
+    @Test
+    public void skipMessageBelowThreshold() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .withThreshold(1000)
+                                                     .build();
+        xMsgMessage msg = new xMsgMessage(topic, "test/binary", compressibleData(500));
+
+        assertThat(compression.compress(msg), is(sameInstance(msg)));
+    }
+
+    @Test
+    public void skipIncompressibleMessage() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .withThreshold(0)
+                                                     .build();
+        byte[] data = new byte[1000];
+        new Random(7).nextBytes(data);
+        xMsgMessage msg = new xMsgMessage(topic, "test/binary", data);
+
+        assertThat(compression.compress(msg), is(sameInstance(msg)));
+    }
+
+    @Test
+    public void skipBufferBackedMessage() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .withThreshold(0)
+                                                     .build();
+        ByteBuffer data = ByteBuffer.allocateDirect(10000);
+        xMsgMessage msg = new xMsgMessage(topic, "test/binary", data);
+
+        assertThat(compression.compress(msg), is(sameInstance(msg)));
+    }
+
+    @Test
+    public void selectCodecByLongestParentTopic() throws Exception {
+        xMsgCodec deflate = xMsgCodecs.get(xMsgCodecs.DEFLATE);
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                .withCodec(xMsgTopic.wrap("histo"), xMsgCodecs.DEFLATE)
+                .withoutCompression(xMsgTopic.wrap("histo:detector"))
+                .withCodec(xMsgTopic.wrap("histo:detector:2"), xMsgCodecs.DEFLATE)
+                .build();
+
+        assertThat(compression.getCodec(xMsgTopic.wrap("histo:calib:1")), is(deflate));
+        assertThat(compression.getCodec(xMsgTopic.wrap("histo:detector:1")), is(nullValue()));
+        assertThat(compression.getCodec(xMsgTopic.wrap("histo:detector:2")), is(deflate));
+        assertThat(compression.getCodec(xMsgTopic.wrap("config:run")), is(nullValue()));
+    }
+
+    @Test
+    public void rejectUnknownCodec() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> xMsgCompression.newBuilder().withCodec("unknown"));
+    }
+
+    @Test
+    public void decompressReceivedMessage() throws Exception {
+        xMsgCompression compression = xMsgCompression.newBuilder()
+                                                     .withCodec(xMsgCodecs.DEFLATE)
+                                                     .build();
+        byte[] data = compressibleData(10000);
+        xMsgMessage msg = compression.compress(new xMsgMessage(topic, "test/binary", data));
+
+        long decompressed = xMsgCodecs.getStats(xMsgCodecs.DEFLATE).getDecompressedMessages();
+
+        ZMsg zmsg = new ZMsg();
+        zmsg.add(msg.encodeTopic());
+        zmsg.add(msg.encodeMetaData());
+        zmsg.add(msg.getData());
+        xMsgMessage received = new xMsgMessage(zmsg);
+
+        assertThat(received.getData(), is(data));
+        assertThat(received.getMetaData().hasCompression(), is(false));
+        assertThat(xMsgCodecs.getStats(xMsgCodecs.DEFLATE).getDecompressedMessages(),
+                   is(decompressed + 1));
+    }
+
+    @Test
+    public void updateCodecStats() throws Exception {
+        xMsgCodecStats stats = xMsgCodecs.getStats(xMsgCodecs.DEFLATE);
+        long messages = stats.getCompressedMessages();
+        long bytes = stats.getUncompressedBytes();
+
+        xMsgCodecs.compress(xMsgCodecs.get(xMsgCodecs.DEFLATE), compressibleData(4000));
+
+        assertThat(stats.getCompressedMessages(), is(messages + 1));
+        assertThat(stats.getUncompressedBytes(), is(bytes + 4000));
+    }
+
+    private static byte[] compressibleData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 16);
+        }
+        return data;
+    }
+}
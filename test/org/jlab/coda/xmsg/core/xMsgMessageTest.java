@@ -24,8 +24,11 @@ package org.jlab.coda.xmsg.core;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.List;
@@ -34,6 +37,7 @@ import org.jlab.coda.xmsg.data.xMsgD.xMsgData;
 import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
 import org.jlab.coda.xmsg.data.xMsgMimeType;
 import org.junit.jupiter.api.Test;
+import org.zeromq.ZMsg;
 
 public class xMsgMessageTest {
 
@@ -125,6 +129,51 @@ public class xMsgMessageTest {
         assertThat(msg.getDataOrder(), is(ByteOrder.LITTLE_ENDIAN));
     }
 
+    @Test
+    public void createWithDirectBuffer() throws Exception {
+        byte[] data = new byte[] {0x0, 0x1, 0x2, 0x3, 0xa, 0xb};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put(data).flip();
+
+        xMsgMessage msg = new xMsgMessage(testTopic, "test/binary", buffer);
+
+        assertThat(msg.hasDataBuffer(), is(true));
+        assertThat(msg.getDataSize(), is(data.length));
+        assertThat(msg.getData(), is(data));
+        assertThat(msg.getDataBuffer().remaining(), is(data.length));
+        assertThat(buffer.remaining(), is(data.length));
+    }
+
+    @Test
+    public void wrapArrayIntoDataBuffer() throws Exception {
+        byte[] data = new byte[] {0x0, 0x1, 0x2, 0x3, 0xa, 0xb};
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder();
+        meta.setByteOrder(xMsgMeta.Endian.Little);
+        meta.setDataType("test/binary");
+
+        xMsgMessage msg = new xMsgMessage(testTopic, meta, data);
+        ByteBuffer buffer = msg.getDataBuffer();
+
+        assertThat(msg.hasDataBuffer(), is(false));
+        assertThat(buffer.array(), is(data));
+        assertThat(buffer.order(), is(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Test
+    public void createBufferResponse() throws Exception {
+        byte[] data = new byte[] {0x0, 0x1, 0x2, 0x3, 0xa, 0xb};
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder();
+        meta.setReplyTo("return_123");
+        meta.setDataType("test/binary");
+
+        xMsgMessage msg = new xMsgMessage(testTopic, meta, ByteBuffer.wrap(data));
+        xMsgMessage res = xMsgMessage.createResponse(msg);
+
+        assertThat(res.getTopic().toString(), is("return_123"));
+        assertThat(res.hasDataBuffer(), is(true));
+        assertThat(res.getData(), is(data));
+    }
+
     @Test
     public void createSimpleResponse() throws Exception {
         byte[] data = new byte[] {0x0, 0x1, 0x2, 0x3, 0xa, 0xb};
@@ -156,4 +205,70 @@ public class xMsgMessageTest {
         assertThat(res.getMetaData().getDataType(), is(xMsgMimeType.SFIXED32));
         assertFalse(res.getMetaData().hasReplyTo());
     }
+
+    @Test
+    public void unpackBatch() throws Exception {
+        byte[] data1 = new byte[] {0x0, 0x1, 0x2};
+        byte[] data2 = new byte[] {0xa, 0xb};
+
+        ZMsg batch = new ZMsg();
+        batch.add(testTopic.toString());
+        batch.add(xMsgMeta.newBuilder().setDataType("test/one").build().toByteArray());
+        batch.add(data1);
+        batch.add(xMsgMeta.newBuilder().setDataType("test/two").build().toByteArray());
+        batch.add(data2);
+
+        List<xMsgMessage> messages = xMsgMessage.unpackBatch(batch);
+
+        assertThat(messages.size(), is(2));
+        assertThat(messages.get(0).getTopic(), is(testTopic));
+        assertThat(messages.get(0).getMimeType(), is("test/one"));
+        assertThat(messages.get(0).getData(), is(data1));
+        assertThat(messages.get(1).getTopic(), is(testTopic));
+        assertThat(messages.get(1).getMimeType(), is("test/two"));
+        assertThat(messages.get(1).getData(), is(data2));
+    }
+
+    @Test
+    public void receivedMessageKeepsRawFrames() throws Exception {
+        byte[] data = new byte[] {0x0, 0x1, 0x2};
+        byte[] meta = xMsgMeta.newBuilder()
+                              .setDataType("test/raw")
+                              .setReplyTo("return_123")
+                              .build()
+                              .toByteArray();
+
+        ZMsg zmsg = new ZMsg();
+        zmsg.add(testTopic.toString());
+        zmsg.add(meta);
+        zmsg.add(data);
+
+        xMsgMessage msg = new xMsgMessage(zmsg);
+
+        assertThat(msg.getRawTopic(), is(testTopic.toBytes()));
+        assertThat(msg.getRawMetaData(), is(sameInstance(meta)));
+        assertThat(msg.getRawData(), is(data));
+
+        assertThat(msg.getTopic(), is(testTopic));
+        assertThat(msg.getMimeType(), is("test/raw"));
+        assertThat(msg.getReplyTopic().toString(), is("return_123"));
+
+        msg.clearReplyTo();
+
+        assertFalse(msg.hasReplyTopic());
+        assertThat(xMsgMeta.parseFrom(msg.getRawMetaData()).hasReplyTo(), is(false));
+    }
+
+    @Test
+    public void receivedMessageWithInvalidMetadataFailsOnAccess() throws Exception {
+        ZMsg zmsg = new ZMsg();
+        zmsg.add(testTopic.toString());
+        zmsg.add(new byte[] {0x7f, 0x7f, 0x7f});
+        zmsg.add(new byte[] {0x0, 0x1, 0x2});
+
+        xMsgMessage msg = new xMsgMessage(zmsg);
+
+        assertThat(msg.getTopic(), is(testTopic));
+        assertThrows(IllegalStateException.class, msg::getMetaData);
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.data.xMsgM.xMsgMeta;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class xMsgPublisherTest {
+
+    private final xMsgTopic topic = xMsgTopic.wrap("writer:scifi:book");
+    private final byte[] topicFrame = topic.toString().getBytes(StandardCharsets.UTF_8);
+
+    private xMsgProxyDriver driver;
+    private ConnectionManager manager;
+
+    @BeforeEach
+    public void setup() {
+        driver = mock(xMsgProxyDriver.class);
+        manager = mock(ConnectionManager.class);
+    }
+
+    @Test
+    public void publishUsesEncodedFrames() throws Exception {
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder().setDataType("test/binary");
+        byte[] metaFrame = meta.build().toByteArray();
+
+        byte[] data1 = new byte[] {0x1, 0x2, 0x3};
+        byte[] data2 = new byte[] {0x4, 0x5, 0x6};
+        ByteBuffer data3 = ByteBuffer.allocateDirect(8);
+
+        try (xMsgPublisher pub = newPublisher(meta)) {
+            pub.publish(data1);
+            pub.publish(data2);
+            pub.publish(data3);
+        }
+
+        verify(driver).send(eq(topicFrame), eq(metaFrame), eq(data1));
+        verify(driver).send(eq(topicFrame), eq(metaFrame), eq(data2));
+        verify(driver).send(eq(topicFrame), eq(metaFrame), eq(data3));
+        verify(manager).releaseProxyConnection(driver);
+    }
+
+    @Test
+    public void setMetaDataEncodesNewFrame() throws Exception {
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder().setDataType("test/binary");
+        byte[] data = new byte[] {0x1, 0x2, 0x3};
+
+        try (xMsgPublisher pub = newPublisher(meta)) {
+            pub.publish(data);
+
+            meta.setDataType("test/other");
+            pub.publish(data);
+
+            pub.setMetaData(meta);
+            pub.publish(data);
+
+            assertThat(pub.getMetaData().getDataType(), is("test/other"));
+        }
+
+        byte[] oldFrame = xMsgMeta.newBuilder().setDataType("test/binary").build().toByteArray();
+        byte[] newFrame = xMsgMeta.newBuilder().setDataType("test/other").build().toByteArray();
+
+        verify(driver, times(2)).send(eq(topicFrame), eq(oldFrame), eq(data));
+        verify(driver, times(1)).send(eq(topicFrame), eq(newFrame), eq(data));
+    }
+
+    @Test
+    public void setMetaDataRemovesReplyTo() throws Exception {
+        xMsgMeta.Builder meta = xMsgMeta.newBuilder().setDataType("test/binary");
+        meta.setReplyTo("return:123");
+
+        try (xMsgPublisher pub = newPublisher(meta)) {
+            assertThat(pub.getMetaData().hasReplyTo(), is(false));
+        }
+    }
+
+    private xMsgPublisher newPublisher(xMsgMeta.Builder meta) {
+        return new xMsgPublisher(new xMsgConnection(manager, driver), topic, meta);
+    }
+}
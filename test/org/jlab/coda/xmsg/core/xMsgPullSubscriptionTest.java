@@ -0,0 +1,56 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+public class xMsgPullSubscriptionTest {
+
+    private final xMsgTopic topic = xMsgTopic.wrap("writer:scifi:book");
+
+    @Test
+    public void takeReturnsNullOnceStoppedAndEmpty() throws Exception {
+        xMsgPullSubscription sub = new xMsgPullSubscription("test",
+                                                            mock(xMsgProxyDriver.class),
+                                                            Collections.singleton(topic),
+                                                            10,
+                                                            xMsgCallbackPolicy.DROP_NEWEST);
+        xMsgMessage first = new xMsgMessage(topic, "test/binary", new byte[] {0x1});
+        xMsgMessage second = new xMsgMessage(topic, "test/binary", new byte[] {0x2});
+        sub.handle(first);
+        sub.handle(second);
+
+        // the subscription is not running, so take must not block
+        assertThat(sub.take(), is(first));
+        assertThat(sub.take(), is(second));
+        assertThat(sub.take(), is(nullValue()));
+    }
+}
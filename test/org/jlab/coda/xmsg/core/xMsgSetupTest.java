@@ -26,10 +26,14 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.jlab.coda.xmsg.net.xMsgProxyAddress;
 import org.jlab.coda.xmsg.net.xMsgRegAddress;
 
+import java.util.concurrent.TimeUnit;
+
 public class xMsgSetupTest {
 
     @Test
@@ -40,21 +44,65 @@ public class xMsgSetupTest {
         assertThat(setup.registrarAddress(), is(new xMsgRegAddress()));
         assertThat(setup.poolSize(), is(xMsgConstants.DEFAULT_POOL_SIZE));
         assertThat(setup.subscriptionMode(), is(xMsgCallbackMode.MULTI_THREAD));
+        assertThat(setup.connectionSetup().sendHighWaterMark(), is(0));
+        assertThat(setup.connectionSetup().receiveHighWaterMark(), is(0));
+        assertThat(setup.connectionSetup().overflowPolicy(),
+                   is(xMsgOverflowPolicy.DROP_NEWEST));
+        assertThat(setup.batchSize(), is(0));
+        assertThat(setup.publishStripes(), is(1));
+        assertThat(setup.callbackQueueSize(), is(0));
+        assertThat(setup.subscriptionThreads(), is(0));
+        assertThat(setup.drainLimit(), is(xMsgConstants.DEFAULT_DRAIN_LIMIT));
+        assertThat(setup.waitStrategy(), is(sameInstance(xMsgWaitStrategy.blocking())));
+        assertThat(setup.ringBatchSize(), is(xMsgConstants.DEFAULT_RING_BATCH));
+        assertThat(setup.ringWaitStrategy(), is(sameInstance(xMsgWaitStrategy.blocking())));
     }
 
 
     @Test
     public void customValues() throws Exception {
+        xMsgCallbackExecutor executor = xMsgCallbackExecutor.forkJoinPool();
+        xMsgWaitStrategy strategy = xMsgWaitStrategy.spinThenPark(50, TimeUnit.MICROSECONDS);
         xMsgSetup setup = xMsgSetup.newBuilder()
                                    .withProxy(new xMsgProxyAddress("10.1.1.10"))
                                    .withRegistrar(new xMsgRegAddress("10.1.1.1"))
                                    .withPoolSize(5)
                                    .withSubscriptionMode(xMsgCallbackMode.SINGLE_THREAD)
+                                   .withCallbackExecutor(executor)
+                                   .withCallbackQueue(500, xMsgCallbackPolicy.DROP_OLDEST)
+                                   .withSendHighWaterMark(1000)
+                                   .withReceiveHighWaterMark(2000)
+                                   .withOverflowPolicy(xMsgOverflowPolicy.FAIL)
+                                   .withPublishBatching(65536, 200)
+                                   .withPublishStripes(4)
+                                   .withDrainLimit(16)
+                                   .withWaitStrategy(strategy)
                                    .build();
 
         assertThat(setup.proxyAddress(), is(new xMsgProxyAddress("10.1.1.10")));
         assertThat(setup.registrarAddress(), is(new xMsgRegAddress("10.1.1.1")));
         assertThat(setup.poolSize(), is(5));
         assertThat(setup.subscriptionMode(), is(xMsgCallbackMode.SINGLE_THREAD));
+        assertThat(setup.callbackExecutor(), is(sameInstance(executor)));
+        assertThat(setup.callbackQueueSize(), is(500));
+        assertThat(setup.callbackPolicy(), is(xMsgCallbackPolicy.DROP_OLDEST));
+        assertThat(setup.connectionSetup().sendHighWaterMark(), is(1000));
+        assertThat(setup.connectionSetup().receiveHighWaterMark(), is(2000));
+        assertThat(setup.connectionSetup().overflowPolicy(), is(xMsgOverflowPolicy.FAIL));
+        assertThat(setup.batchSize(), is(65536));
+        assertThat(setup.batchDelay(), is(200L));
+        assertThat(setup.publishStripes(), is(4));
+        assertThat(setup.drainLimit(), is(16));
+        assertThat(setup.waitStrategy().spinTime(), is(50_000L));
+    }
+
+
+    @Test
+    public void ringModeDoesNotSupportDropOldest() throws Exception {
+        xMsgSetup.Builder builder = xMsgSetup.newBuilder()
+                .withSubscriptionMode(xMsgCallbackMode.RING)
+                .withCallbackQueue(100, xMsgCallbackPolicy.DROP_OLDEST);
+
+        assertThrows(IllegalArgumentException.class, builder::build);
     }
 }
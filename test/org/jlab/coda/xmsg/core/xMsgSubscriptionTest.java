@@ -0,0 +1,57 @@
+/*
+ *    Copyright (C) 2017. Jefferson Lab (JLAB). All Rights Reserved.
+ *    Permission to use, copy, modify, and distribute this software and its
+ *    documentation for governmental use, educational, research, and not-for-profit
+ *    purposes, without fee and without a signed licensing agreement.
+ *
+ *    IN NO EVENT SHALL JLAB BE LIABLE TO ANY PARTY FOR DIRECT, INDIRECT, SPECIAL,
+ *    INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING LOST PROFITS, ARISING OUT OF
+ *    THE USE OF THIS SOFTWARE AND ITS DOCUMENTATION, EVEN IF JLAB HAS BEEN ADVISED
+ *    OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *    JLAB SPECIFICALLY DISCLAIMS ANY WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ *    THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ *    PURPOSE. THE CLARA SOFTWARE AND ACCOMPANYING DOCUMENTATION, IF ANY, PROVIDED
+ *    HEREUNDER IS PROVIDED "AS IS". JLAB HAS NO OBLIGATION TO PROVIDE MAINTENANCE,
+ *    SUPPORT, UPDATES, ENHANCEMENTS, OR MODIFICATIONS.
+ *
+ *    This software was developed under the United States Government License.
+ *    For more information contact author at gurjyan@jlab.org
+ *    Department of Experimental Nuclear Physics, Jefferson Lab.
+ */
+
+package org.jlab.coda.xmsg.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.concurrent.TimeUnit;
+
+public class xMsgSubscriptionTest {
+
+    @Test
+    public void batchPollNeverWaitsPastTheDeadline() throws Exception {
+        long step = TimeUnit.MICROSECONDS.toNanos(10);
+        long max = TimeUnit.MILLISECONDS.toNanos(3);
+        for (long remaining = 0; remaining <= max; remaining += step) {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(
+                    xMsgSubscription.batchPollTimeout(remaining));
+
+            assertThat(timeout, lessThanOrEqualTo(remaining));
+            assertThat(remaining - timeout, lessThan(TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    @Test
+    public void batchPollSpinsForSubMillisecondDelays() throws Exception {
+        assertThat(xMsgSubscription.batchPollTimeout(TimeUnit.MICROSECONDS.toNanos(200)),
+                   is(0L));
+        assertThat(xMsgSubscription.batchPollTimeout(TimeUnit.MICROSECONDS.toNanos(1500)),
+                   is(1L));
+        assertThat(xMsgSubscription.batchPollTimeout(-1), is(0L));
+    }
+}
@@ -25,8 +25,12 @@ package org.jlab.coda.xmsg.core;
 import org.jlab.coda.xmsg.data.xMsgRegInfo;
 import org.jlab.coda.xmsg.data.xMsgRegQuery;
 import org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration;
+import org.jlab.coda.xmsg.excp.xMsgException;
 import org.jlab.coda.xmsg.net.xMsgConnectionFactory;
+import org.jlab.coda.xmsg.net.xMsgContext;
+import org.jlab.coda.xmsg.net.xMsgProxyAddress;
 import org.jlab.coda.xmsg.net.xMsgRegAddress;
+import org.jlab.coda.xmsg.sys.pubsub.xMsgProxyDriver;
 import org.jlab.coda.xmsg.sys.regdis.xMsgRegDriver;
 import org.jlab.coda.xmsg.sys.regdis.RegistrationDataFactory;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,14 +39,30 @@ import org.junit.jupiter.api.Test;
 import static org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration.OwnerType.PUBLISHER;
 import static org.jlab.coda.xmsg.data.xMsgR.xMsgRegistration.OwnerType.SUBSCRIBER;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class xMsgTest {
 
+    private xMsgConnectionFactory factory;
     private xMsgRegDriver driver;
     private xMsg core;
 
@@ -52,7 +72,7 @@ public class xMsgTest {
 
     @BeforeEach
     public void setup() throws Exception {
-        xMsgConnectionFactory factory = mock(xMsgConnectionFactory.class);
+        factory = mock(xMsgConnectionFactory.class);
         xMsgSetup setup = xMsgSetup.newBuilder()
                                    .withRegistrar(regAddr)
                                    .withPoolSize(1)
@@ -168,6 +188,110 @@ public class xMsgTest {
     }
 
 
+    @Test
+    public void publishBatchWithSingleConnection() throws Exception {
+        xMsgProxyDriver proxyDriver = mock(xMsgProxyDriver.class);
+        doReturn(new xMsgProxyAddress()).when(proxyDriver).getAddress();
+        doReturn(proxyDriver).when(factory).createPublisherConnection(any(), any());
+
+        List<xMsgMessage> messages = Arrays.asList(xMsgMessage.createFrom(topic, 1),
+                                                   xMsgMessage.createFrom(topic, 2),
+                                                   xMsgMessage.createFrom(topic, 3));
+        core.publish(messages);
+
+        verify(factory, times(1)).createPublisherConnection(any(), any());
+        verify(proxyDriver, times(3)).send(any(byte[].class),
+                                           any(byte[].class),
+                                           any(byte[].class));
+    }
+
+
+    @Test
+    public void publishToManyProxiesEncodesOnce() throws Exception {
+        xMsgProxyAddress addr1 = new xMsgProxyAddress("10.2.9.1");
+        xMsgProxyAddress addr2 = new xMsgProxyAddress("10.2.9.2");
+        xMsgProxyAddress addr3 = new xMsgProxyAddress("10.2.9.3");
+
+        xMsgProxyDriver driver1 = mockProxyDriver(addr1);
+        xMsgProxyDriver driver2 = mockProxyDriver(addr2);
+        doThrow(new xMsgException("could not connect"))
+                .when(factory).createPublisherConnection(eq(addr3), any());
+
+        xMsgMessage msg = xMsgMessage.createFrom(topic, 1);
+        byte[] topicFrame = msg.encodeTopic();
+        byte[] metaDataFrame = msg.encodeMetaData();
+
+        Map<xMsgProxyAddress, xMsgException> errors;
+        try {
+            errors = core.publish(Arrays.asList(addr1, addr2, addr3), msg);
+        } finally {
+            core.close();
+        }
+
+        assertThat(errors.keySet(), is(Collections.singleton(addr3)));
+        verify(driver1, times(1)).send(eq(topicFrame), eq(metaDataFrame), any(byte[].class));
+        verify(driver2, times(1)).send(eq(topicFrame), eq(metaDataFrame), any(byte[].class));
+    }
+
+    @Test
+    public void publishAsyncWithStripesRoutesByTopic() throws Exception {
+        xMsgProxyAddress address = new xMsgProxyAddress("10.2.9.1");
+        List<xMsgProxyDriver> drivers = Arrays.asList(mockSendingDriver(address),
+                                                      mockSendingDriver(address));
+        Deque<xMsgProxyDriver> connections = new ArrayDeque<>(drivers);
+        when(factory.createPublisherConnection(eq(address), any()))
+                .thenAnswer(i -> connections.poll());
+
+        xMsgContext context = xMsgContext.newContext();
+        doReturn(context).when(factory).getContext();
+
+        xMsgSetup setup = xMsgSetup.newBuilder().withPublishStripes(2).build();
+        List<xMsgTopic> topics = Arrays.asList(topic,
+                                               xMsgTopic.wrap("writer:scifi:story"),
+                                               xMsgTopic.wrap("writer:drama:play"));
+        try (xMsg striped = new xMsg(name, setup, factory)) {
+            assertThat(context.getIOThreads(), is(2));
+
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                for (xMsgTopic t : topics) {
+                    results.add(striped.publishAsync(address, xMsgMessage.createFrom(t, i)));
+                }
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                             .get(5, TimeUnit.SECONDS);
+        } finally {
+            context.destroy();
+        }
+
+        verify(factory, times(2)).createPublisherConnection(eq(address), any());
+        for (xMsgTopic t : topics) {
+            int stripe = Math.floorMod(t.hashCode(), drivers.size());
+            verify(drivers.get(stripe), times(10)).send(eq(t.toBytes()),
+                                                        any(byte[].class),
+                                                        any(byte[].class));
+            verify(drivers.get(1 - stripe), times(0)).send(eq(t.toBytes()),
+                                                           any(byte[].class),
+                                                           any(byte[].class));
+        }
+    }
+
+    private xMsgProxyDriver mockProxyDriver(xMsgProxyAddress address) throws Exception {
+        xMsgProxyDriver proxyDriver = mockSendingDriver(address);
+        doReturn(proxyDriver).when(factory).createPublisherConnection(eq(address), any());
+        return proxyDriver;
+    }
+
+    private xMsgProxyDriver mockSendingDriver(xMsgProxyAddress address) throws Exception {
+        xMsgProxyDriver proxyDriver = mock(xMsgProxyDriver.class);
+        doReturn(address).when(proxyDriver).getAddress();
+        doReturn(true).when(proxyDriver).send(any(byte[].class),
+                                              any(byte[].class),
+                                              any(byte[].class));
+        return proxyDriver;
+    }
+
+
     private xMsgRegistration.Builder createRegistration(xMsgRegistration.OwnerType regType,
                                                         xMsgTopic topic) {
         return RegistrationDataFactory.newRegistration(name, regType, topic.toString());